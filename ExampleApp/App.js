@@ -89,6 +89,15 @@ export default class App extends Component<{}> {
               <Button title="Search Name in Contacts" onPress={ () => this._searchContacts( this.state.searchText ) } />
             </View>
 
+            { Platform.OS === 'android' &&
+              <View style={ styles.button }>
+                <Button title="Benchmark Search" onPress={ () => this._benchmarkSearch( this.state.searchText ) } />
+                <Text style={ styles.instructions }>{ this.state.benchmarkResult }</Text>
+                <Button title="Benchmark Loading" onPress={ () => this._benchmarkLoading( this.state.searchText ) } />
+                <Text style={ styles.instructions }>{ this.state.loadingBenchmarkResult }</Text>
+              </View>
+            }
+
             <FlatList
               style={styles.contacts}
               data={this.state.contacts}
@@ -170,8 +179,76 @@ export default class App extends Component<{}> {
       });
     }
   }
+
+  // Times the LIKE '%text%' search against the indexed search, each run a few times so the provider's caches are warm.
+  async _benchmarkSearch( searchText, runs = 5 ) {
+    if ( !this.state.canUserAccessContacts ) return;
+
+    const time = async ( search ) => {
+      let total = 0;
+      let count = 0;
+      for ( let i = 0; i < runs; i++ ) {
+        const start = Date.now();
+        const contacts = await new Promise( resolve => search( searchText, (error, contacts) => resolve( contacts || [] ) ) );
+        total += Date.now() - start;
+        count = contacts.length;
+      }
+      return { average: Math.round( total / runs ), count };
+    };
+
+    const like    = await time( Contacts.searchContacts );
+    const indexed = await time( Contacts.searchContactsIndexed );
+
+    this.setState( {
+      benchmarkResult: `LIKE: ${like.average}ms (${like.count} contacts), indexed: ${indexed.average}ms (${indexed.count} contacts)`,
+    } );
+  }
+
+  // Times the main loading calls against a budget per 1,000 contacts, so regressions show up when run on a device with
+  // a large address book. Every call is run a few times so the provider's caches are warm.
+  async _benchmarkLoading( searchText, runs = 5 ) {
+    if ( !this.state.canUserAccessContacts ) return;
+
+    const time = async ( load ) => {
+      let total = 0;
+      let result = [];
+      for ( let i = 0; i < runs; i++ ) {
+        const start = Date.now();
+        result = await new Promise( resolve => load( (error, result) => resolve( result || [] ) ) );
+        total += Date.now() - start;
+      }
+      return { average: Math.round( total / runs ), result };
+    };
+
+    const getContacts = await time( callback => Contacts.getContacts( callback ) );
+    const thousands   = Math.max( 1, getContacts.result.length / 1000 );
+    const contactIds  = getContacts.result.slice( 0, 20 ).map( contact => contact.recordID );
+
+    const timings = {
+      getContacts:      getContacts.average,
+      searchContacts:   ( await time( callback => Contacts.searchContacts( searchText || 'a', callback ) ) ).average,
+      getContactsByIds: ( await time( callback => Contacts.getContactsByIds( contactIds, callback ) ) ).average,
+    };
+
+    const lines = Object.keys( timings ).map( name => {
+      const budget = Math.round( LOADING_BUDGETS_MS_PER_1000_CONTACTS[name] * thousands );
+      return `${name}: ${timings[name]}ms (budget ${budget}ms)${ timings[name] > budget ? ' OVER BUDGET' : '' }`;
+    } );
+
+    this.setState( {
+      loadingBenchmarkResult: [ `${getContacts.result.length} contacts`, ...lines ].join( '\n' ),
+    } );
+  }
 }
 
+// Rough budgets; tighten them to what your test devices actually achieve. getContactsByIds always loads 20 contacts,
+// but its queries still slow down as the Data table grows.
+const LOADING_BUDGETS_MS_PER_1000_CONTACTS = {
+  getContacts:      400,
+  searchContacts:   150,
+  getContactsByIds: 20,
+};
+
 const styles = StyleSheet.create({
   scrollView: {
     flex: 1,
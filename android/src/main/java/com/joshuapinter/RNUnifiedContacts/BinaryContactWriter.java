@@ -0,0 +1,240 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes decoded contacts to a compact binary file that can be memory-mapped and read one record at a time, for
+ * address books too large to hand over as a WritableArray or JSON.
+ *
+ * All numbers are little-endian. Strings are stored once in a string table at the end of the file and referenced by
+ * their index, with -1 for null. The file is laid out as:
+ *
+ * <pre>
+ * header         "RNUC", int schemaVersion, int contactCount, int stringCount,
+ *                long recordsOffset, long stringTableOffset, long recordIndexOffset
+ * records        per contact: int length, then length bytes of
+ *                  string contactId, rawContactId, lookupKey, displayName, givenName, middleName, familyName,
+ *                         prefix, suffix, company, jobTitle, department, photoUri
+ *                  byte flags (1 = has photo, 2 = has birthday), short birthday year (0 if unknown),
+ *                  byte birthday month, byte birthday day
+ *                  short phone count, then per phone: string label, string number
+ *                  short email count, then per email: string label, string address
+ *                  short postal address count, then per address: string label, formattedAddress, street, pobox,
+ *                         neighborhood, city, region, postCode, country
+ * string table   int offset of every string, relative to the first string, then per string: int length, UTF-8 bytes
+ * record index   long offset of every record
+ * </pre>
+ *
+ * A string is an int index into the string table.
+ */
+class BinaryContactWriter implements Closeable {
+
+    static final int SCHEMA_VERSION = 1;
+
+    private static final byte[]  MAGIC       = {'R', 'N', 'U', 'C'};
+    private static final int     HEADER_SIZE = 4 + 4 + 4 + 4 + 8 + 8 + 8;
+    private static final Charset UTF_8       = Charset.forName("UTF-8");
+
+    private static final byte FLAG_HAS_PHOTO    = 1;
+    private static final byte FLAG_HAS_BIRTHDAY = 2;
+
+    private static final String[] POSTAL_ADDRESS_KEYS = {
+            "label", "formattedAddress", "street", "pobox", "neighborhood", "city", "region", "postCode", "country"
+    };
+
+    private final RandomAccessFile file;
+    private final FileChannel      channel;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    private       ByteBuffer record = ByteBuffer.allocate(4 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    private       long       position = HEADER_SIZE;
+
+    private final Map<String, Integer> stringIndexes = new HashMap<>();
+    private final List<String>         strings = new ArrayList<>();
+
+    private long[] recordOffsets = new long[1024];
+    private int    count = 0;
+
+    BinaryContactWriter(String path) throws IOException {
+        file = new RandomAccessFile(path, "rw");
+        file.setLength(0);
+        channel = file.getChannel();
+        channel.position(HEADER_SIZE);
+    }
+
+    void write(ContactsProvider.Contact contact) throws IOException {
+        record.clear();
+
+        putString(contact.contactId);
+        putString(contact.rawContactId);
+        putString(contact.lookupKey);
+        putString(contact.displayName);
+        putString(contact.givenName);
+        putString(contact.middleName);
+        putString(contact.familyName);
+        putString(contact.prefix);
+        putString(contact.suffix);
+        putString(contact.company);
+        putString(contact.jobTitle);
+        putString(contact.department);
+        putString(contact.photoUri);
+
+        ensureRecordCapacity(8);
+        record.put((byte) ((contact.hasPhoto ? FLAG_HAS_PHOTO : 0) | (contact.birthday != null ? FLAG_HAS_BIRTHDAY : 0)));
+        record.putShort((short) (contact.birthday != null ? contact.birthday.year : 0));
+        record.put((byte) (contact.birthday != null ? contact.birthday.month : 0));
+        record.put((byte) (contact.birthday != null ? contact.birthday.day : 0));
+
+        putItems(contact.phones);
+        putItems(contact.emails);
+
+        ensureRecordCapacity(2);
+        record.putShort((short) contact.postalAddresses.size());
+        for (ContactsProvider.Contact.PostalAddressItem address : contact.postalAddresses) {
+            for (String key : POSTAL_ADDRESS_KEYS) {
+                putString(address.getString(key));
+            }
+        }
+
+        record.flip();
+        if (count == recordOffsets.length) {
+            recordOffsets = Arrays.copyOf(recordOffsets, count * 2);
+        }
+        recordOffsets[count++] = position;
+
+        ensureBufferCapacity(4);
+        buffer.putInt(record.remaining());
+        position += 4;
+        writeBuffer(record);
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * Writes the string table, the record index and the header. The file is complete only after this.
+     */
+    void finish() throws IOException {
+        long stringTableOffset = position;
+
+        List<byte[]> encoded = new ArrayList<>(strings.size());
+        int stringOffset = 0;
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(UTF_8);
+            encoded.add(bytes);
+            ensureBufferCapacity(4);
+            buffer.putInt(stringOffset);
+            position += 4;
+            stringOffset += 4 + bytes.length;
+        }
+        for (byte[] bytes : encoded) {
+            ensureBufferCapacity(4);
+            buffer.putInt(bytes.length);
+            position += 4;
+            writeBuffer(ByteBuffer.wrap(bytes));
+        }
+
+        long recordIndexOffset = position;
+        for (int i = 0; i < count; i++) {
+            ensureBufferCapacity(8);
+            buffer.putLong(recordOffsets[i]);
+            position += 8;
+        }
+        flush();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC);
+        header.putInt(SCHEMA_VERSION);
+        header.putInt(count);
+        header.putInt(strings.size());
+        header.putLong(HEADER_SIZE);
+        header.putLong(stringTableOffset);
+        header.putLong(recordIndexOffset);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, HEADER_SIZE - header.remaining());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private void putItems(List<ContactsProvider.Contact.Item> items) {
+        ensureRecordCapacity(2);
+        record.putShort((short) items.size());
+        for (ContactsProvider.Contact.Item item : items) {
+            putString(item.label);
+            putString(item.value);
+        }
+    }
+
+    private void putString(String string) {
+        int index = -1;
+        if (string != null) {
+            Integer existing = stringIndexes.get(string);
+            if (existing != null) {
+                index = existing;
+            } else {
+                index = strings.size();
+                strings.add(string);
+                stringIndexes.put(string, index);
+            }
+        }
+        ensureRecordCapacity(4);
+        record.putInt(index);
+    }
+
+    private void ensureRecordCapacity(int bytes) {
+        if (record.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(record.capacity() * 2).order(ByteOrder.LITTLE_ENDIAN);
+            record.flip();
+            larger.put(record);
+            record = larger;
+        }
+    }
+
+    private void ensureBufferCapacity(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    /**
+     * Copies the source into the buffer, flushing the buffer to the channel whenever it fills up.
+     */
+    private void writeBuffer(ByteBuffer source) throws IOException {
+        position += source.remaining();
+        while (source.hasRemaining()) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int length = Math.min(buffer.remaining(), source.remaining());
+            ByteBuffer slice = source.duplicate();
+            slice.limit(slice.position() + length);
+            buffer.put(slice);
+            source.position(source.position() + length);
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
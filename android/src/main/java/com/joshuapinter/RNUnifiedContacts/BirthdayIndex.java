@@ -0,0 +1,135 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.provider.ContactsContract;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static android.provider.ContactsContract.CommonDataKinds.Event;
+
+/**
+ * Birthdays of all contacts, bucketed by day of the year so upcoming birthdays are found without scanning them all.
+ *
+ * Only birthday Event rows are read to build the index, and every date is parsed once. Days are numbered as in a
+ * leap year, so February 29 has a bucket of its own; in other years those birthdays are celebrated on February 28.
+ */
+class BirthdayIndex {
+
+    private static final int[] DAYS_BEFORE_MONTH = {0, 31, 60, 91, 121, 152, 182, 213, 244, 274, 305, 335};
+
+    private static final int FEBRUARY_28 = dayOfLeapYear(2, 28);
+    private static final int FEBRUARY_29 = dayOfLeapYear(2, 29);
+
+    private final List<List<Entry>> buckets = new ArrayList<>(366);
+
+    private BirthdayIndex() {
+        for (int i = 0; i < 366; i++) {
+            buckets.add(null);
+        }
+    }
+
+    static BirthdayIndex build(ContentResolver contentResolver) {
+        BirthdayIndex index = new BirthdayIndex();
+        Set<String> contactIds = new HashSet<>();
+
+        Cursor cursor = contentResolver.query(
+                ContactsContract.Data.CONTENT_URI,
+                new String[]{ContactsContract.Data.CONTACT_ID, ContactsContract.Contacts.DISPLAY_NAME, Event.START_DATE},
+                ContactsContract.Data.MIMETYPE + " = ? AND " + Event.TYPE + " = ?",
+                new String[]{Event.CONTENT_ITEM_TYPE, String.valueOf(Event.TYPE_BIRTHDAY)},
+                null
+        );
+
+        try {
+            while (cursor != null && cursor.moveToNext()) {
+                ContactsProvider.Contact.Birthday birthday = ContactsProvider.Contact.Birthday.parse(cursor.getString(2));
+                // A contact joined from several raw contacts may have the same birthday more than once.
+                if (birthday == null || !contactIds.add(cursor.getString(0))) {
+                    continue;
+                }
+
+                int day = dayOfLeapYear(birthday.month, birthday.day);
+                List<Entry> bucket = index.buckets.get(day);
+                if (bucket == null) {
+                    bucket = new ArrayList<>(1);
+                    index.buckets.set(day, bucket);
+                }
+                bucket.add(new Entry(cursor.getString(0), cursor.getString(1), birthday));
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Returns the birthdays from today until the given number of days from now, soonest first.
+     */
+    WritableArray upcoming(int days, Calendar today) {
+        WritableArray upcoming = Arguments.createArray();
+        Calendar date = (Calendar) today.clone();
+
+        for (int daysUntil = 0; daysUntil <= Math.min(days, 365); daysUntil++) {
+            int year = date.get(Calendar.YEAR);
+            int day = dayOfLeapYear(date.get(Calendar.MONTH) + 1, date.get(Calendar.DAY_OF_MONTH));
+
+            addBucket(upcoming, buckets.get(day), year, daysUntil);
+            if (day == FEBRUARY_28 && !new GregorianCalendar().isLeapYear(year)) {
+                addBucket(upcoming, buckets.get(FEBRUARY_29), year, daysUntil);
+            }
+
+            date.add(Calendar.DAY_OF_MONTH, 1);
+        }
+
+        return upcoming;
+    }
+
+    private static void addBucket(WritableArray upcoming, List<Entry> bucket, int year, int daysUntil) {
+        if (bucket == null) {
+            return;
+        }
+        for (Entry entry : bucket) {
+            WritableMap map = Arguments.createMap();
+            map.putString("recordID", entry.contactId);
+            map.putString("displayName", entry.displayName);
+            map.putInt("month", entry.birthday.month);
+            map.putInt("day", entry.birthday.day);
+            if (entry.birthday.year > 0) {
+                map.putInt("year", entry.birthday.year);
+                map.putInt("age", year - entry.birthday.year);
+            }
+            map.putInt("daysUntil", daysUntil);
+            upcoming.pushMap(map);
+        }
+    }
+
+    private static int dayOfLeapYear(int month, int day) {
+        int daysInMonth = (month == 12 ? 366 : DAYS_BEFORE_MONTH[month]) - DAYS_BEFORE_MONTH[month - 1];
+        return DAYS_BEFORE_MONTH[month - 1] + Math.min(day, daysInMonth) - 1;
+    }
+
+    private static class Entry {
+        private final String contactId;
+        private final String displayName;
+        private final ContactsProvider.Contact.Birthday birthday;
+
+        Entry(String contactId, String displayName, ContactsProvider.Contact.Birthday birthday) {
+            this.contactId = contactId;
+            this.displayName = displayName;
+            this.birthday = birthday;
+        }
+    }
+}
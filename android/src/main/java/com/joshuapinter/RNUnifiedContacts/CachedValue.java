@@ -0,0 +1,51 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A value built from the address book, like an index, that is dropped as soon as the address book changes.
+ *
+ * Values are built by the caller without holding any lock, and invalidating never waits for a build in progress, so
+ * it is safe from any thread. Each invalidation starts a new generation: a value built from the address book of an
+ * older generation is handed to the caller that built it, but never published to later callers. Two callers finding
+ * the cache empty at the same time may both build the value; the last one to finish is kept.
+ */
+class CachedValue<T> {
+
+    private final AtomicInteger      generation = new AtomicInteger();
+    private final AtomicReference<T> value = new AtomicReference<>();
+
+    /**
+     * The current value, or null if it hasn't been built since the last invalidation.
+     */
+    T peek() {
+        return value.get();
+    }
+
+    /**
+     * The generation to pass to publish for a value that is about to be built.
+     */
+    int generation() {
+        return generation.get();
+    }
+
+    /**
+     * Keeps the value built from the address book as it was in the given generation, unless it was invalidated since.
+     */
+    void publish(T built, int builtInGeneration) {
+        if (generation.get() != builtInGeneration) {
+            return;
+        }
+        value.set(built);
+        // Invalidated between the check and the set.
+        if (generation.get() != builtInGeneration) {
+            value.compareAndSet(built, null);
+        }
+    }
+
+    void invalidate() {
+        generation.incrementAndGet();
+        value.set(null);
+    }
+}
@@ -0,0 +1,137 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import android.util.LruCache;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The full details of recently shown contacts, for lists that show contact summaries and hydrate only the rows that
+ * are on screen.
+ *
+ * Hydrating a batch reads the Data rows of all its uncached contacts with one query. Afterwards, the batch of the
+ * same size that follows it in the summary order can be prefetched, so scrolling on finds it cached.
+ */
+class ContactDetailCache {
+
+    private static final int MAX_CONTACTS = 200;
+
+    private final ContactsProvider contactsProvider;
+
+    private final LruCache<String, ContactsProvider.Contact> contacts = new LruCache<>(MAX_CONTACTS);
+
+    private List<String>         order = Collections.emptyList();
+    private Map<String, Integer> positions = Collections.emptyMap();
+
+    // Incremented whenever the cache is cleared, so contacts read before that are never cached after it.
+    private int generation = 0;
+
+    ContactDetailCache(ContactsProvider contactsProvider) {
+        this.contactsProvider = contactsProvider;
+    }
+
+    /**
+     * Returns the summaries of all contacts and remembers their order for prefetching.
+     */
+    WritableArray summaries() {
+        List<String> contactIds = new ArrayList<>();
+        WritableArray summaries = contactsProvider.getContactSummaries(contactIds);
+
+        Map<String, Integer> contactPositions = new HashMap<>(contactIds.size() * 2);
+        for (int i = 0; i < contactIds.size(); i++) {
+            contactPositions.put(contactIds.get(i), i);
+        }
+
+        synchronized (this) {
+            order = contactIds;
+            positions = contactPositions;
+        }
+        return summaries;
+    }
+
+    /**
+     * Returns the full contacts in the order of the IDs, with null in place of every contact that wasn't found.
+     */
+    WritableArray hydrate(List<String> contactIds) {
+        Map<String, ContactsProvider.Contact> found = load(contactIds);
+
+        WritableArray result = Arguments.createArray();
+        for (String contactId : contactIds) {
+            ContactsProvider.Contact contact = found.get(contactId);
+            if (contact != null) {
+                result.pushMap(contact.toMap());
+            } else {
+                result.pushNull();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Loads the contacts that follow the given ones in the summary order, as many as were given.
+     */
+    void prefetchAfter(List<String> contactIds) {
+        List<String> next;
+        synchronized (this) {
+            int last = -1;
+            for (String contactId : contactIds) {
+                Integer position = positions.get(contactId);
+                if (position != null && position > last) {
+                    last = position;
+                }
+            }
+            if (last == -1) {
+                return;
+            }
+            next = new ArrayList<>(order.subList(last + 1, Math.min(last + 1 + contactIds.size(), order.size())));
+        }
+        load(next);
+    }
+
+    synchronized void clear() {
+        contacts.evictAll();
+        order = Collections.emptyList();
+        positions = Collections.emptyMap();
+        generation++;
+    }
+
+    private Map<String, ContactsProvider.Contact> load(List<String> contactIds) {
+        Map<String, ContactsProvider.Contact> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        int loadGeneration;
+
+        synchronized (this) {
+            for (String contactId : contactIds) {
+                ContactsProvider.Contact contact = contacts.get(contactId);
+                if (contact != null) {
+                    found.put(contactId, contact);
+                } else {
+                    missing.add(contactId);
+                }
+            }
+            loadGeneration = generation;
+        }
+
+        if (missing.isEmpty()) {
+            return found;
+        }
+
+        Map<String, ContactsProvider.Contact> loaded = contactsProvider.loadContactsByIds(missing);
+        found.putAll(loaded);
+
+        synchronized (this) {
+            if (loadGeneration == generation) {
+                for (ContactsProvider.Contact contact : loaded.values()) {
+                    contacts.put(contact.contactId, contact);
+                }
+            }
+        }
+        return found;
+    }
+}
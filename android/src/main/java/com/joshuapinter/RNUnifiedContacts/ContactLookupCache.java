@@ -0,0 +1,111 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * All contacts, decoded once and indexed by contact ID and phone number, for the synchronous lookups that have to
+ * answer without a query.
+ *
+ * Phone numbers are matched on their digits like the provider's PhoneLookup does: two numbers match when the digits of
+ * one end with all the digits of the other, as long as that's at least MIN_MATCH digits. So "+1 (415) 555-0123"
+ * matches "415-555-0123".
+ */
+class ContactLookupCache {
+
+    private static final int MIN_MATCH = 7;
+
+    private final Map<String, ContactsProvider.Contact> contactsById;
+    private final Map<String, List<PhoneEntry>>         phonesByLastDigits = new HashMap<>();
+
+    private ContactLookupCache(Map<String, ContactsProvider.Contact> contactsById) {
+        this.contactsById = contactsById;
+
+        for (ContactsProvider.Contact contact : contactsById.values()) {
+            for (ContactsProvider.Contact.Item phone : contact.phones) {
+                String digits = digits(phone.value);
+                if (digits.length() < MIN_MATCH) {
+                    continue;
+                }
+                String key = digits.substring(digits.length() - MIN_MATCH);
+                List<PhoneEntry> entries = phonesByLastDigits.get(key);
+                if (entries == null) {
+                    entries = new ArrayList<>(1);
+                    phonesByLastDigits.put(key, entries);
+                }
+                entries.add(new PhoneEntry(digits, contact));
+            }
+        }
+    }
+
+    static ContactLookupCache build(ContactsProvider contactsProvider) {
+        return new ContactLookupCache(contactsProvider.loadContacts(null));
+    }
+
+    /**
+     * The number of contacts getContacts returns.
+     */
+    int count() {
+        return contactsById.size();
+    }
+
+    WritableMap getContactById(String contactId) {
+        ContactsProvider.Contact contact = contactsById.get(contactId);
+        return contact != null ? contact.toMap() : null;
+    }
+
+    /**
+     * Returns the contact with the phone number, preferring an exact match of the digits over one that only shares
+     * the last digits. Null if no contact has the number.
+     */
+    WritableMap getContactByPhoneNumber(String phoneNumber) {
+        String digits = digits(phoneNumber);
+        if (digits.length() < MIN_MATCH) {
+            return null;
+        }
+
+        List<PhoneEntry> entries = phonesByLastDigits.get(digits.substring(digits.length() - MIN_MATCH));
+        if (entries == null) {
+            return null;
+        }
+
+        ContactsProvider.Contact match = null;
+        for (PhoneEntry entry : entries) {
+            if (entry.digits.equals(digits)) {
+                return entry.contact.toMap();
+            }
+            if (match == null && (entry.digits.endsWith(digits) || digits.endsWith(entry.digits))) {
+                match = entry.contact;
+            }
+        }
+        return match != null ? match.toMap() : null;
+    }
+
+    private static String digits(String phoneNumber) {
+        if (phoneNumber == null) {
+            return "";
+        }
+        StringBuilder digits = new StringBuilder(phoneNumber.length());
+        for (int i = 0; i < phoneNumber.length(); i++) {
+            char c = phoneNumber.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
+
+    private static class PhoneEntry {
+        private final String                   digits;
+        private final ContactsProvider.Contact contact;
+
+        PhoneEntry(String digits, ContactsProvider.Contact contact) {
+            this.digits = digits;
+            this.contact = contact;
+        }
+    }
+}
@@ -0,0 +1,556 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.OperationApplicationException;
+import android.content.SyncAdapterType;
+import android.net.Uri;
+import android.os.RemoteException;
+import android.provider.ContactsContract;
+import android.text.TextUtils;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static android.provider.ContactsContract.CommonDataKinds.Email;
+import static android.provider.ContactsContract.CommonDataKinds.Note;
+import static android.provider.ContactsContract.CommonDataKinds.Organization;
+import static android.provider.ContactsContract.CommonDataKinds.Phone;
+import static android.provider.ContactsContract.CommonDataKinds.StructuredName;
+
+/**
+ * Writes edits made elsewhere, e.g. on a server, back to contacts without overwriting changes made on the device in
+ * the meantime.
+ *
+ * New rows are added to the raw contact stored on the device only, if the contact has one, or else to the first raw
+ * contact of an account whose sync adapter uploads changes. Rows of read-only accounts are never changed. The name,
+ * organization and note are written to the row of a writable raw contact that already has one, so the contact doesn't
+ * end up with a second name.
+ *
+ * Updates with a missing recordID or keys of the wrong type are reported as errors instead of failing the others.
+ *
+ * Every update carries the rawContactVersions the contact had when the edits were based on it. Contacts whose raw
+ * contacts have another version now are reported as conflicts and left alone. The others are diffed against their
+ * current Data rows, so only the rows that actually change are written, and the operations of each contact start
+ * with assertions of the versions in case the contact changes between reading and writing.
+ *
+ * Contacts are written in batches of up to MAX_OPERATIONS_PER_BATCH operations. A batch is a single transaction, so
+ * when one of its contacts fails the whole batch is rolled back and its contacts are written one by one to find out
+ * which one it was.
+ */
+class ContactUpdater {
+
+    private static final int MAX_OPERATIONS_PER_BATCH = 400;
+
+    private static final String[] NAME_FIELDS = {"givenName", "middleName", "familyName", "prefix", "suffix"};
+    private static final String[] NAME_COLUMNS = {
+            StructuredName.GIVEN_NAME, StructuredName.MIDDLE_NAME, StructuredName.FAMILY_NAME, StructuredName.PREFIX,
+            StructuredName.SUFFIX
+    };
+
+    private static final String[] ORGANIZATION_FIELDS = {"company", "jobTitle", "department"};
+    private static final String[] ORGANIZATION_COLUMNS = {Organization.COMPANY, Organization.TITLE, Organization.DEPARTMENT};
+
+    private final ContentResolver  contentResolver;
+    private final ContactsProvider contactsProvider;
+    private final Set<String>      readOnlyAccountTypes = readOnlyAccountTypes();
+
+    private final Map<String, ArrayList<ContentProviderOperation>> batch = new LinkedHashMap<>();
+    private       int                                              batchOperationCount = 0;
+
+    private final WritableArray updated   = Arguments.createArray();
+    private final WritableArray unchanged = Arguments.createArray();
+    private final WritableArray conflicts = Arguments.createArray();
+    private final WritableArray errors    = Arguments.createArray();
+
+    ContactUpdater(ContentResolver contentResolver, ContactsProvider contactsProvider) {
+        this.contentResolver = contentResolver;
+        this.contactsProvider = contactsProvider;
+    }
+
+    /**
+     * Applies the updates and returns the recordIDs of the updated and unchanged contacts, the conflicts with the
+     * contacts' current rawContactVersions, and the errors.
+     */
+    WritableMap update(ReadableArray updates) {
+        List<String> contactIds = new ArrayList<>();
+        List<String> validContactIds = new ArrayList<>();
+        for (int i = 0; i < updates.size(); i++) {
+            String contactId = updates.getType(i) == ReadableType.Map ? readId(updates.getMap(i), "recordID") : null;
+            contactIds.add(contactId);
+            if (contactId != null) {
+                validContactIds.add(contactId);
+            }
+        }
+        Map<String, ContactsProvider.Contact> contacts = contactsProvider.loadContactsByIds(validContactIds);
+
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < updates.size(); i++) {
+            String contactId = contactIds.get(i);
+            if (contactId == null) {
+                addError(null, "every update needs a recordID that is a string or number");
+                continue;
+            }
+            ReadableMap update = updates.getMap(i);
+            ContactsProvider.Contact contact = contacts.get(contactId);
+
+            if (!seen.add(contactId)) {
+                // The second update would be diffed against the contact as it was before the first.
+                addError(contactId, "recordID is updated more than once");
+                continue;
+            }
+            if (contact == null) {
+                addConflict(contactId, "deleted", null);
+                continue;
+            }
+            String invalid = validate(update);
+            if (invalid != null) {
+                addError(contactId, invalid);
+                continue;
+            }
+
+            Map<String, Integer> expectedVersions = toVersions(update.getMap("rawContactVersions"));
+            if (!expectedVersions.equals(contact.rawContactVersions)) {
+                addConflict(contactId, "changed", contact.rawContactVersions);
+                continue;
+            }
+
+            Set<String> writable = writableRawContactIds(contact);
+            String target = targetRawContactId(contact, writable);
+            if (target == null) {
+                addError(contactId, "all raw contacts of the contact are read-only");
+                continue;
+            }
+
+            ArrayList<ContentProviderOperation> operations = buildOperations(contact, expectedVersions, target, writable, update);
+            if (operations.size() == expectedVersions.size()) {
+                // Nothing but the assertions.
+                unchanged.pushString(contactId);
+                continue;
+            }
+
+            if (batchOperationCount + operations.size() > MAX_OPERATIONS_PER_BATCH) {
+                applyBatch();
+            }
+            batch.put(contactId, operations);
+            batchOperationCount += operations.size();
+        }
+        applyBatch();
+
+        WritableMap result = Arguments.createMap();
+        result.putArray("updated", updated);
+        result.putArray("unchanged", unchanged);
+        result.putArray("conflicts", conflicts);
+        result.putArray("errors", errors);
+        return result;
+    }
+
+    private void applyBatch() {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        for (ArrayList<ContentProviderOperation> contactOperations : batch.values()) {
+            operations.addAll(contactOperations);
+        }
+
+        try {
+            contentResolver.applyBatch(ContactsContract.AUTHORITY, operations);
+            for (String contactId : batch.keySet()) {
+                updated.pushString(contactId);
+            }
+        } catch (RemoteException | OperationApplicationException | RuntimeException batchError) {
+            // Nothing of the batch was written. Find out which contacts were to blame.
+            for (Map.Entry<String, ArrayList<ContentProviderOperation>> contactOperations : batch.entrySet()) {
+                String contactId = contactOperations.getKey();
+                try {
+                    contentResolver.applyBatch(ContactsContract.AUTHORITY, contactOperations.getValue());
+                    updated.pushString(contactId);
+                } catch (OperationApplicationException e) {
+                    // A version assertion failed, the contact was changed since it was read above.
+                    addConflict(contactId, "changed", null);
+                } catch (RemoteException | RuntimeException e) {
+                    addError(contactId, e.toString());
+                }
+            }
+        }
+
+        batch.clear();
+        batchOperationCount = 0;
+    }
+
+    /**
+     * Returns why the update can't be applied, or null if all of its keys have the types they need. Reading a key of
+     * another type would throw, and items without a value would be written as empty rows.
+     */
+    private static String validate(ReadableMap update) {
+        for (String[] fields : new String[][]{NAME_FIELDS, ORGANIZATION_FIELDS, {"note"}}) {
+            for (String field : fields) {
+                if (update.hasKey(field) && update.getType(field) != ReadableType.Null && update.getType(field) != ReadableType.String) {
+                    return field + " must be a string";
+                }
+            }
+        }
+
+        if (!update.hasKey("rawContactVersions") || update.isNull("rawContactVersions")) {
+            return "rawContactVersions is required";
+        }
+        if (update.getType("rawContactVersions") != ReadableType.Map) {
+            return "rawContactVersions must be an object";
+        }
+        ReadableMap versions = update.getMap("rawContactVersions");
+        ReadableMapKeySetIterator iterator = versions.keySetIterator();
+        while (iterator.hasNextKey()) {
+            if (versions.getType(iterator.nextKey()) != ReadableType.Number) {
+                return "rawContactVersions must map raw contact IDs to numbers";
+            }
+        }
+
+        String invalid = validateItems(update, "phoneNumbers", "number");
+        return invalid != null ? invalid : validateItems(update, "emailAddresses", "email");
+    }
+
+    private static String validateItems(ReadableMap update, String key, String valueKey) {
+        if (!update.hasKey(key) || update.isNull(key)) {
+            return null;
+        }
+        if (update.getType(key) != ReadableType.Array) {
+            return key + " must be an array";
+        }
+
+        ReadableArray items = update.getArray(key);
+        for (int i = 0; i < items.size(); i++) {
+            if (items.getType(i) != ReadableType.Map) {
+                return key + " must only contain objects";
+            }
+            ReadableMap item = items.getMap(i);
+            if (!item.hasKey(valueKey) || item.getType(valueKey) != ReadableType.String || TextUtils.isEmpty(item.getString(valueKey))) {
+                return "every item of " + key + " needs a " + valueKey;
+            }
+            if (item.hasKey("label") && item.getType("label") != ReadableType.Null && item.getType("label") != ReadableType.String) {
+                return "labels of " + key + " must be strings";
+            }
+            if (item.hasKey("id") && item.getType("id") != ReadableType.Null && readId(item, "id") == null) {
+                return "ids of " + key + " must be strings or numbers";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds the version assertions of the contact's raw contacts followed by the operations changing the Data rows
+     * that differ from the update. Fields missing from the update are left as they are. Rows are only written in
+     * writable raw contacts, and new rows are added to the target raw contact.
+     */
+    private static ArrayList<ContentProviderOperation> buildOperations(ContactsProvider.Contact contact, Map<String, Integer> versions,
+                                                                       String target, Set<String> writable, ReadableMap update) {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+
+        for (Map.Entry<String, Integer> version : versions.entrySet()) {
+            operations.add(ContentProviderOperation.newAssertQuery(ContactsContract.RawContacts.CONTENT_URI)
+                    .withSelection(ContactsContract.RawContacts._ID + " = ? AND " + ContactsContract.RawContacts.VERSION + " = ?",
+                            new String[]{version.getKey(), String.valueOf(version.getValue())})
+                    .withExpectedCount(1)
+                    .build());
+        }
+
+        addRowOperation(operations, target, writableRow(contact, contact.nameRows, target, writable), StructuredName.CONTENT_ITEM_TYPE,
+                update, NAME_FIELDS, NAME_COLUMNS,
+                new String[]{contact.givenName, contact.middleName, contact.familyName, contact.prefix, contact.suffix});
+        addRowOperation(operations, target, writableRow(contact, contact.organizationRows, target, writable), Organization.CONTENT_ITEM_TYPE,
+                update, ORGANIZATION_FIELDS, ORGANIZATION_COLUMNS,
+                new String[]{contact.company, contact.jobTitle, contact.department});
+        addRowOperation(operations, target, writableRow(contact, contact.noteRows, target, writable), Note.CONTENT_ITEM_TYPE,
+                update, new String[]{"note"}, new String[]{Note.NOTE},
+                new String[]{contact.note});
+
+        if (update.hasKey("phoneNumbers") && !update.isNull("phoneNumbers")) {
+            addItemOperations(operations, target, writable, contact.phones, update.getArray("phoneNumbers"), "number", Phone.CONTENT_ITEM_TYPE);
+        }
+        if (update.hasKey("emailAddresses") && !update.isNull("emailAddresses")) {
+            addItemOperations(operations, target, writable, contact.emails, update.getArray("emailAddresses"), "email", Email.CONTENT_ITEM_TYPE);
+        }
+
+        return operations;
+    }
+
+    /**
+     * The row of a field a raw contact has only one of to write to: the target's, or else the first one of another
+     * writable raw contact, or null if no writable raw contact has one.
+     */
+    private static ContactsProvider.Contact.DataRow writableRow(ContactsProvider.Contact contact, Map<String, ContactsProvider.Contact.DataRow> rows,
+                                                                String target, Set<String> writable) {
+        if (rows.containsKey(target)) {
+            return rows.get(target);
+        }
+        for (String rawContactId : contact.rawContactVersions.keySet()) {
+            if (writable.contains(rawContactId) && rows.containsKey(rawContactId)) {
+                return rows.get(rawContactId);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Updates or deletes the row holding the fields, if any field of the update differs from the row's own value. The
+     * row is deleted when all of its fields end up empty. Without a row, one is inserted into the target raw contact if
+     * the update differs from the values the contact shows, which then come from a read-only raw contact.
+     */
+    private static void addRowOperation(List<ContentProviderOperation> operations, String target, ContactsProvider.Contact.DataRow row,
+                                        String mimeType, ReadableMap update, String[] fields, String[] columns, String[] contactValues) {
+        String rowId = row != null ? row.id : null;
+        String[] values = new String[fields.length];
+        boolean changed = false;
+        boolean empty = true;
+        for (int i = 0; i < fields.length; i++) {
+            String current = row != null ? row.values.get(columns[i]) : contactValues[i];
+            current = current == null ? "" : current;
+            values[i] = update.hasKey(fields[i]) && !update.isNull(fields[i]) ? update.getString(fields[i]) : current;
+            changed |= !values[i].equals(current);
+            empty &= values[i].isEmpty();
+        }
+        if (!changed || (rowId == null && empty)) {
+            return;
+        }
+
+        ContentProviderOperation.Builder builder;
+        if (rowId == null) {
+            builder = newDataInsert(target, mimeType);
+        } else if (empty) {
+            operations.add(ContentProviderOperation.newDelete(dataUri(rowId)).build());
+            return;
+        } else {
+            builder = ContentProviderOperation.newUpdate(dataUri(rowId));
+        }
+        for (int i = 0; i < fields.length; i++) {
+            builder.withValue(columns[i], values[i]);
+        }
+        operations.add(builder.build());
+    }
+
+    /**
+     * Makes the phone numbers or email addresses of the contact those of the update. Items of the update are matched
+     * to the current rows by their id, or by value and label if they have none, so unchanged rows aren't touched.
+     * Rows of read-only raw contacts are left alone: a changed one is added to the target raw contact instead.
+     */
+    private static void addItemOperations(List<ContentProviderOperation> operations, String target, Set<String> writable,
+                                          List<ContactsProvider.Contact.Item> currentItems, ReadableArray items, String valueKey, String mimeType) {
+        Map<String, ContactsProvider.Contact.Item> remaining = new LinkedHashMap<>();
+        for (ContactsProvider.Contact.Item item : currentItems) {
+            remaining.put(item.id, item);
+        }
+
+        List<ReadableMap> unmatched = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            ReadableMap item = items.getMap(i);
+            String id = readId(item, "id");
+            ContactsProvider.Contact.Item current = id != null ? remaining.remove(id) : null;
+            if (current == null) {
+                unmatched.add(item);
+                continue;
+            }
+
+            boolean valueChanged = !current.value.equals(item.getString(valueKey));
+            boolean labelChanged = !label(current).equals(label(item, mimeType));
+            if (!valueChanged && !labelChanged) {
+                continue;
+            }
+            if (!writable.contains(current.rawContactId)) {
+                operations.add(withItemValues(newDataInsert(target, mimeType), item, valueKey, mimeType, true).build());
+            } else {
+                // An unchanged label keeps the row's type, e.g. a fax number read as "other" stays a fax number.
+                operations.add(withItemValues(ContentProviderOperation.newUpdate(dataUri(current.id)), item, valueKey, mimeType, labelChanged).build());
+            }
+        }
+
+        for (ReadableMap item : unmatched) {
+            ContactsProvider.Contact.Item same = null;
+            for (ContactsProvider.Contact.Item current : remaining.values()) {
+                if (current.value.equals(item.getString(valueKey)) && label(current).equals(label(item, mimeType))) {
+                    same = current;
+                    break;
+                }
+            }
+            if (same != null) {
+                remaining.remove(same.id);
+            } else {
+                operations.add(withItemValues(newDataInsert(target, mimeType), item, valueKey, mimeType, true).build());
+            }
+        }
+
+        for (ContactsProvider.Contact.Item item : remaining.values()) {
+            if (writable.contains(item.rawContactId)) {
+                operations.add(ContentProviderOperation.newDelete(dataUri(item.id)).build());
+            }
+        }
+    }
+
+    /**
+     * Sets the value of the item and, if withType, its TYPE and LABEL: home, work, mobile and other map to their
+     * types, any other label is a custom one.
+     */
+    private static ContentProviderOperation.Builder withItemValues(ContentProviderOperation.Builder builder, ReadableMap item, String valueKey,
+                                                                   String mimeType, boolean withType) {
+        boolean phone = Phone.CONTENT_ITEM_TYPE.equals(mimeType);
+        builder.withValue(phone ? Phone.NUMBER : Email.ADDRESS, item.getString(valueKey));
+        if (!withType) {
+            return builder;
+        }
+
+        int type;
+        switch (label(item, mimeType)) {
+            case "home":
+                type = phone ? Phone.TYPE_HOME : Email.TYPE_HOME;
+                break;
+            case "work":
+                type = phone ? Phone.TYPE_WORK : Email.TYPE_WORK;
+                break;
+            case "mobile":
+                type = phone ? Phone.TYPE_MOBILE : Email.TYPE_MOBILE;
+                break;
+            case "other":
+                type = phone ? Phone.TYPE_OTHER : Email.TYPE_OTHER;
+                break;
+            default:
+                // Phone.TYPE_CUSTOM and Email.TYPE_CUSTOM are both BaseTypes.TYPE_CUSTOM.
+                return builder.withValue(Phone.TYPE, Phone.TYPE_CUSTOM).withValue(Phone.LABEL, label(item, mimeType));
+        }
+        // Clears the label a custom type had.
+        return builder.withValue(Phone.TYPE, type).withValue(Phone.LABEL, null);
+    }
+
+    /**
+     * The label of the item as it will be read back: "other" if it has none, and email labels are lower case.
+     */
+    private static String label(ReadableMap item, String mimeType) {
+        String label = item.hasKey("label") && !item.isNull("label") ? item.getString("label") : "";
+        if (Email.CONTENT_ITEM_TYPE.equals(mimeType)) {
+            label = label.toLowerCase(Locale.US);
+        }
+        return TextUtils.isEmpty(label) ? "other" : label;
+    }
+
+    /**
+     * The label of a current row, compared like those of the update: a custom type without a label reads as "".
+     */
+    private static String label(ContactsProvider.Contact.Item item) {
+        return TextUtils.isEmpty(item.label) ? "other" : item.label;
+    }
+
+    /**
+     * The raw contact new rows of the contact are added to: the one stored on the device only if there is one, the
+     * first writable one otherwise, or null if they're all read-only.
+     */
+    private static String targetRawContactId(ContactsProvider.Contact contact, Set<String> writable) {
+        String target = null;
+        for (String rawContactId : contact.rawContactVersions.keySet()) {
+            if (!writable.contains(rawContactId)) {
+                continue;
+            }
+            if (contact.rawContactAccountTypes.get(rawContactId) == null) {
+                return rawContactId;
+            }
+            if (target == null) {
+                target = rawContactId;
+            }
+        }
+        return target;
+    }
+
+    /**
+     * The contact's raw contacts that may be written to, i.e. all but those of accounts whose sync adapter can't
+     * upload changes, which would revert them on the next sync.
+     */
+    private Set<String> writableRawContactIds(ContactsProvider.Contact contact) {
+        Set<String> writable = new HashSet<>();
+        for (String rawContactId : contact.rawContactVersions.keySet()) {
+            if (!readOnlyAccountTypes.contains(contact.rawContactAccountTypes.get(rawContactId))) {
+                writable.add(rawContactId);
+            }
+        }
+        return writable;
+    }
+
+    private static Set<String> readOnlyAccountTypes() {
+        Set<String> accountTypes = new HashSet<>();
+        for (SyncAdapterType syncAdapterType : ContentResolver.getSyncAdapterTypes()) {
+            if (ContactsContract.AUTHORITY.equals(syncAdapterType.authority) && !syncAdapterType.supportsUploading()) {
+                accountTypes.add(syncAdapterType.accountType);
+            }
+        }
+        return accountTypes;
+    }
+
+    private static ContentProviderOperation.Builder newDataInsert(String rawContactId, String mimeType) {
+        return ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
+                .withValue(ContactsContract.Data.RAW_CONTACT_ID, rawContactId)
+                .withValue(ContactsContract.Data.MIMETYPE, mimeType);
+    }
+
+    private static Uri dataUri(String rowId) {
+        return ContentUris.withAppendedId(ContactsContract.Data.CONTENT_URI, Long.parseLong(rowId));
+    }
+
+    /**
+     * Reads an ID that may come from JS as a number or a string, or returns null if it is missing or of another type.
+     */
+    private static String readId(ReadableMap map, String key) {
+        if (!map.hasKey(key)) {
+            return null;
+        }
+        switch (map.getType(key)) {
+            case Number:
+                return String.valueOf((long) map.getDouble(key));
+            case String:
+                return map.getString(key);
+            default:
+                return null;
+        }
+    }
+
+    private static Map<String, Integer> toVersions(ReadableMap map) {
+        Map<String, Integer> versions = new LinkedHashMap<>();
+        ReadableMapKeySetIterator iterator = map.keySetIterator();
+        while (iterator.hasNextKey()) {
+            String rawContactId = iterator.nextKey();
+            versions.put(rawContactId, map.getInt(rawContactId));
+        }
+        return versions;
+    }
+
+    private void addConflict(String contactId, String reason, Map<String, Integer> currentVersions) {
+        WritableMap conflict = Arguments.createMap();
+        conflict.putString("recordID", contactId);
+        conflict.putString("reason", reason);
+        if (currentVersions != null) {
+            WritableMap versions = Arguments.createMap();
+            for (Map.Entry<String, Integer> version : currentVersions.entrySet()) {
+                versions.putInt(version.getKey(), version.getValue());
+            }
+            conflict.putMap("rawContactVersions", versions);
+        }
+        conflicts.pushMap(conflict);
+    }
+
+    private void addError(String contactId, String message) {
+        WritableMap error = Arguments.createMap();
+        error.putString("recordID", contactId);
+        error.putString("message", message);
+        errors.pushMap(error);
+    }
+}
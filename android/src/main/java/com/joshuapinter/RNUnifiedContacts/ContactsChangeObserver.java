@@ -0,0 +1,155 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.ContactsContract;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Watches the contacts provider and reports which contacts were added, changed or deleted.
+ *
+ * Change notifications arrive in bursts, e.g. hundreds of them while an account syncs, so they're debounced and only
+ * the last one of a burst triggers a diff. The diff compares a signature of each contact's raw contact versions with
+ * the snapshot taken after the previous diff, which only needs the RawContacts table and never decodes Data rows.
+ */
+class ContactsChangeObserver extends ContentObserver {
+
+    interface Listener {
+        void onContactsChanged(List<String> added, List<String> changed, List<String> deleted);
+    }
+
+    private static final String TAG = "ContactsChangeObserver";
+
+    private static final long DEBOUNCE_DELAY_MS = 500;
+
+    private final ContentResolver contentResolver;
+    private final Listener        listener;
+    private final Handler         handler;
+
+    private Map<String, Long> snapshot;
+
+    private final Runnable diffRunnable = new Runnable() {
+        @Override
+        public void run() {
+            diff();
+        }
+    };
+
+    /**
+     * Starts observing. Notifications are debounced and diffed on the looper's thread, which should be a background
+     * thread since diffing queries the provider.
+     */
+    static ContactsChangeObserver start(ContentResolver contentResolver, Looper looper, Listener listener) {
+        final ContactsChangeObserver observer = new ContactsChangeObserver(contentResolver, listener, new Handler(looper));
+        observer.handler.post(new Runnable() {
+            @Override
+            public void run() {
+                observer.snapshot = observer.takeSnapshot();
+            }
+        });
+        contentResolver.registerContentObserver(ContactsContract.Contacts.CONTENT_URI, true, observer);
+
+        return observer;
+    }
+
+    private ContactsChangeObserver(ContentResolver contentResolver, Listener listener, Handler handler) {
+        super(handler);
+        this.contentResolver = contentResolver;
+        this.listener = listener;
+        this.handler = handler;
+    }
+
+    void stop() {
+        contentResolver.unregisterContentObserver(this);
+        handler.removeCallbacks(diffRunnable);
+    }
+
+    @Override
+    public void onChange(boolean selfChange) {
+        onChange(selfChange, null);
+    }
+
+    @Override
+    public void onChange(boolean selfChange, Uri uri) {
+        handler.removeCallbacks(diffRunnable);
+        handler.postDelayed(diffRunnable, DEBOUNCE_DELAY_MS);
+    }
+
+    private void diff() {
+        Map<String, Long> current = takeSnapshot();
+        Map<String, Long> previous = snapshot;
+        snapshot = current;
+
+        if (previous == null || current == null) {
+            return;
+        }
+
+        List<String> added = new ArrayList<>();
+        List<String> changed = new ArrayList<>();
+        List<String> deleted = new ArrayList<>();
+
+        for (Map.Entry<String, Long> entry : current.entrySet()) {
+            Long previousSignature = previous.get(entry.getKey());
+            if (previousSignature == null) {
+                added.add(entry.getKey());
+            } else if (!previousSignature.equals(entry.getValue())) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (String contactId : previous.keySet()) {
+            if (!current.containsKey(contactId)) {
+                deleted.add(contactId);
+            }
+        }
+
+        if (!added.isEmpty() || !changed.isEmpty() || !deleted.isEmpty()) {
+            listener.onContactsChanged(added, changed, deleted);
+        }
+    }
+
+    /**
+     * Maps each contact ID to a signature of its raw contacts. The provider bumps a raw contact's VERSION whenever any
+     * of its Data rows change, so the signature changes when a contact is edited, joined or split.
+     */
+    private Map<String, Long> takeSnapshot() {
+        Cursor cursor;
+        try {
+            cursor = contentResolver.query(
+                    ContactsContract.RawContacts.CONTENT_URI,
+                    new String[]{ContactsContract.RawContacts.CONTACT_ID, ContactsContract.RawContacts._ID, ContactsContract.RawContacts.VERSION},
+                    ContactsContract.RawContacts.DELETED + " = 0 AND " + ContactsContract.RawContacts.CONTACT_ID + " IS NOT NULL",
+                    null,
+                    null
+            );
+        } catch (SecurityException e) {
+            // READ_CONTACTS was revoked while we were observing.
+            Log.w(TAG, e.toString());
+            return null;
+        }
+
+        Map<String, Long> signatures = new HashMap<>();
+        try {
+            while (cursor != null && cursor.moveToNext()) {
+                String contactId = cursor.getString(0);
+                long rawContactSignature = cursor.getLong(1) * 1000003L ^ cursor.getLong(2);
+
+                Long signature = signatures.get(contactId);
+                signatures.put(contactId, (signature == null ? 0 : signature) + rawContactSignature * 31);
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return signatures;
+    }
+}
@@ -0,0 +1,60 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import android.os.Process;
+import android.util.Log;
+
+import com.facebook.react.bridge.WritableArray;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Loads all contacts in the background right after the module is created, so the first getContacts call finds them
+ * loaded, or at least half-way there, instead of paying for the provider's cold start on its own.
+ *
+ * The load runs on its own thread at background priority, so it doesn't compete with the UI thread while the app
+ * starts up. Its result is handed out once: getContacts calls after the first load contacts anew.
+ */
+class ContactsPrewarm {
+
+    private final FutureTask<WritableArray> task;
+
+    ContactsPrewarm(final ContactsProvider contactsProvider) {
+        task = new FutureTask<>(new Callable<WritableArray>() {
+            @Override
+            public WritableArray call() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                return contactsProvider.getContacts();
+            }
+        });
+    }
+
+    void start() {
+        new Thread(task, "RNUnifiedContactsPrewarm").start();
+    }
+
+    /**
+     * Discards the result. A query in progress still runs to its end, but nobody waits for it.
+     */
+    void cancel() {
+        task.cancel(true);
+    }
+
+    /**
+     * Waits for the load to finish and returns the contacts, or null if it was cancelled or failed, in which case the
+     * caller should load them itself.
+     */
+    WritableArray await() {
+        try {
+            return task.get();
+        } catch (CancellationException | ExecutionException e) {
+            Log.w("ContactsPrewarm", e.toString());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
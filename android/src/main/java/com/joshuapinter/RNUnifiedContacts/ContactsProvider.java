@@ -1,30 +1,52 @@
 package com.joshuapinter.RNUnifiedContacts;
 
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.SystemClock;
 import android.provider.ContactsContract;
 import android.support.annotation.NonNull;
 import android.text.TextUtils;
 import android.util.Log;
 
 import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import static android.provider.ContactsContract.CommonDataKinds.Contactables;
 import static android.provider.ContactsContract.CommonDataKinds.Email;
 import static android.provider.ContactsContract.CommonDataKinds.Event;
+import static android.provider.ContactsContract.CommonDataKinds.GroupMembership;
+import static android.provider.ContactsContract.CommonDataKinds.Im;
+import static android.provider.ContactsContract.CommonDataKinds.Nickname;
+import static android.provider.ContactsContract.CommonDataKinds.Note;
 import static android.provider.ContactsContract.CommonDataKinds.Organization;
 import static android.provider.ContactsContract.CommonDataKinds.Phone;
+import static android.provider.ContactsContract.CommonDataKinds.Relation;
 import static android.provider.ContactsContract.CommonDataKinds.StructuredName;
 import static android.provider.ContactsContract.CommonDataKinds.StructuredPostal;
+import static android.provider.ContactsContract.CommonDataKinds.Website;
 
 public class ContactsProvider {
     public static final int ID_FOR_PROFILE_CONTACT = -1;
@@ -33,38 +55,14 @@ public class ContactsProvider {
         add((ContactsContract.Data._ID));
         add(ContactsContract.Data.CONTACT_ID);
         add(ContactsContract.Data.RAW_CONTACT_ID);
+        add(ContactsContract.RawContacts.VERSION);
+        add(ContactsContract.RawContacts.ACCOUNT_TYPE);
         add(ContactsContract.Data.LOOKUP_KEY);
         add(ContactsContract.Contacts.Data.MIMETYPE);
         add(ContactsContract.Profile.DISPLAY_NAME);
         add(Contactables.PHOTO_URI);
-        add(StructuredName.DISPLAY_NAME);
-        add(StructuredName.GIVEN_NAME);
-        add(StructuredName.MIDDLE_NAME);
-        add(StructuredName.FAMILY_NAME);
-        add(StructuredName.PREFIX);
-        add(StructuredName.SUFFIX);
-        add(Phone.NUMBER);
-        add(Phone.TYPE);
-        add(Phone.LABEL);
-        add(Email.DATA);
-        add(Email.ADDRESS);
-        add(Email.TYPE);
-        add(Email.LABEL);
-        add(Organization.COMPANY);
-        add(Organization.TITLE);
-        add(Organization.DEPARTMENT);
-        add(StructuredPostal.FORMATTED_ADDRESS);
-        add(StructuredPostal.TYPE);
-        add(StructuredPostal.LABEL);
-        add(StructuredPostal.STREET);
-        add(StructuredPostal.POBOX);
-        add(StructuredPostal.NEIGHBORHOOD);
-        add(StructuredPostal.CITY);
-        add(StructuredPostal.REGION);
-        add(StructuredPostal.POSTCODE);
-        add(StructuredPostal.COUNTRY);
-        add(Event.START_DATE);
-        add(Event.TYPE);
+        add(ContactsContract.Contacts.SORT_KEY_ALTERNATIVE);
+        addAll(DataRowDecoders.columns());
     }};
 
     private static final List<String> FULL_PROJECTION = new ArrayList<String>() {{
@@ -75,6 +73,34 @@ public class ContactsProvider {
         add(Contactables.PHOTO_URI);
     }};
 
+    private static final List<String> SUMMARY_PROJECTION = new ArrayList<String>() {{
+        add(ContactsContract.Contacts._ID);
+        add(ContactsContract.Contacts.LOOKUP_KEY);
+        add(ContactsContract.Contacts.DISPLAY_NAME_PRIMARY);
+        add(ContactsContract.Contacts.PHOTO_THUMBNAIL_URI);
+        add(ContactsContract.Contacts.STARRED);
+    }};
+
+    private static final List<String> GROUP_PROJECTION = new ArrayList<String>() {{
+        add(ContactsContract.Groups._ID);
+        add(ContactsContract.Groups.TITLE);
+        add(ContactsContract.Groups.ACCOUNT_NAME);
+        add(ContactsContract.Groups.ACCOUNT_TYPE);
+        add(ContactsContract.Groups.GROUP_VISIBLE);
+        add(ContactsContract.Groups.SUMMARY_COUNT);
+    }};
+
+    private static final String[] FULL_MIME_TYPES = DataRowDecoders.mimeTypes();
+
+    // SQLite refuses statements with more than 999 bound arguments, so long IN (...) lists are split up and
+    // leave some room for the arguments of the rest of the selection.
+    private static final int MAX_IN_ARGUMENTS = 500;
+
+    // Reading the clock for every row would cost more than it saves, so deadlines are checked every so many rows.
+    private static final int DEADLINE_CHECK_INTERVAL = 256;
+
+    private static final int INITIAL_FUZZY_CAPACITY = 100;
+
     private final ContentResolver contentResolver;
 
     public ContactsProvider(ContentResolver contentResolver) {
@@ -82,24 +108,11 @@ public class ContactsProvider {
     }
 
     public WritableArray getContactsMatchingString(String searchString) {
-        Map<String, Contact> matchingContacts;
-        {
-            Cursor cursor = contentResolver.query(
-                    ContactsContract.Data.CONTENT_URI,
-                    FULL_PROJECTION.toArray(new String[FULL_PROJECTION.size()]),
-                    ContactsContract.Contacts.DISPLAY_NAME_PRIMARY + " LIKE ?",
-                    new String[]{"%" + searchString + "%"},
-                    null
-            );
+        return getContactsMatchingString(searchString, null);
+    }
 
-            try {
-                matchingContacts = loadContactsFrom(cursor);
-            } finally {
-                if (cursor != null) {
-                    cursor.close();
-                }
-            }
-        }
+    public WritableArray getContactsMatchingString(String searchString, Filter filter) {
+        Map<String, Contact> matchingContacts = loadContactsMatchingString(searchString, filter);
 
         WritableArray contacts = Arguments.createArray();
         for (Contact contact : matchingContacts.values()) {
@@ -108,6 +121,99 @@ public class ContactsProvider {
         return contacts;
     }
 
+    /**
+     * The contacts whose display name contains the search string, ignoring the case of ASCII letters like SQLite's
+     * LIKE does.
+     */
+    @NonNull
+    Map<String, Contact> loadContactsMatchingString(String searchString, Filter filter) {
+        return queryContacts(
+                ContactsContract.Contacts.DISPLAY_NAME_PRIMARY + " LIKE ?",
+                Arrays.asList("%" + searchString + "%"),
+                filter
+        );
+    }
+
+    /**
+     * Searches with the provider's own filter URIs instead of a LIKE '%text%' scan of the Data table. Names, phone
+     * numbers and email addresses are matched through their search indexes in parallel, and the matching contacts are
+     * then read with one batched Data query. Contacts are ordered as the provider ranked them, name matches first.
+     */
+    public WritableArray searchContactsIndexed(String searchString) {
+        if (TextUtils.isEmpty(searchString)) {
+            return getContacts();
+        }
+
+        final String encoded = Uri.encode(searchString);
+
+        FutureTask<List<String>> phoneMatches = new FutureTask<>(new Callable<List<String>>() {
+            @Override
+            public List<String> call() {
+                return queryContactIds(Uri.withAppendedPath(Phone.CONTENT_FILTER_URI, encoded), Phone.CONTACT_ID);
+            }
+        });
+        FutureTask<List<String>> emailMatches = new FutureTask<>(new Callable<List<String>>() {
+            @Override
+            public List<String> call() {
+                return queryContactIds(Uri.withAppendedPath(Email.CONTENT_FILTER_URI, encoded), Email.CONTACT_ID);
+            }
+        });
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(phoneMatches);
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(emailMatches);
+
+        Set<String> contactIds = new LinkedHashSet<>(queryContactIds(Uri.withAppendedPath(ContactsContract.Contacts.CONTENT_FILTER_URI, encoded), ContactsContract.Contacts._ID));
+        // Awaited one at a time, so a filter URI that fails only loses its own matches.
+        contactIds.addAll(awaitContactIds(phoneMatches));
+        contactIds.addAll(awaitContactIds(emailMatches));
+
+        List<String> orderedIds = new ArrayList<>(contactIds);
+        Map<String, Contact> matchingContacts = queryContactsIn(
+                ContactsContract.Data.CONTACT_ID,
+                orderedIds,
+                mimeTypeSelection(FULL_MIME_TYPES),
+                Arrays.asList(FULL_MIME_TYPES)
+        );
+
+        WritableArray contacts = Arguments.createArray();
+        for (String contactId : orderedIds) {
+            Contact contact = matchingContacts.get(contactId);
+            if (contact != null) {
+                contacts.pushMap(contact.toMap());
+            }
+        }
+        return contacts;
+    }
+
+    @NonNull
+    private static List<String> awaitContactIds(FutureTask<List<String>> matches) {
+        try {
+            return matches.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Log.w("ContactsProvider", e.getCause().toString());
+        }
+        return new ArrayList<>();
+    }
+
+    @NonNull
+    private List<String> queryContactIds(Uri uri, String contactIdColumn) {
+        List<String> contactIds = new ArrayList<>();
+
+        Cursor cursor = contentResolver.query(uri, new String[]{contactIdColumn}, null, null, null);
+        try {
+            while (cursor != null && cursor.moveToNext()) {
+                contactIds.add(cursor.getString(0));
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return contactIds;
+    }
+
      public WritableMap getContactByRawId(String contactRawId) {
 
         // Get Contact Id from Raw Contact Id
@@ -164,19 +270,170 @@ public class ContactsProvider {
        return null;
     }
 
-    public WritableArray getContacts() {
-        Map<String, Contact> justMe;
-        {
+    /**
+     * Fetches several contacts at once with chunked IN (...) selections instead of one query per contact. The result
+     * is in the order of the requested IDs, with null in place of every contact that wasn't found.
+     */
+    public WritableArray getContactsByIds(List<String> contactIds) {
+        Map<String, Contact> contacts = loadContactsByIds(contactIds);
+
+        WritableArray result = Arguments.createArray();
+        for (String contactId : contactIds) {
+            Contact contact = contacts.get(contactId);
+            if (contact != null) {
+                result.pushMap(contact.toMap());
+            } else {
+                result.pushNull();
+            }
+        }
+        return result;
+    }
+
+    @NonNull
+    Map<String, Contact> loadContactsByIds(List<String> contactIds) {
+        return queryContactsIn(
+                ContactsContract.Data.CONTACT_ID,
+                new ArrayList<>(new LinkedHashSet<>(contactIds)),
+                mimeTypeSelection(FULL_MIME_TYPES),
+                Arrays.asList(FULL_MIME_TYPES)
+        );
+    }
+
+    /**
+     * The starred contacts, most frequently contacted first, up to the limit. Only their IDs are read from the
+     * Contacts table before the contacts themselves are loaded with one batched Data query.
+     */
+    @NonNull
+    List<Contact> loadFavorites(int limit) {
+        List<String> contactIds = new ArrayList<>();
+
+        Cursor cursor = contentResolver.query(
+                ContactsContract.Contacts.CONTENT_URI,
+                new String[]{ContactsContract.Contacts._ID},
+                ContactsContract.Contacts.STARRED + " = 1",
+                null,
+                // Android 10 and later no longer track how often contacts are contacted, which leaves the names.
+                ContactsContract.Contacts.TIMES_CONTACTED + " DESC, " + ContactsContract.Contacts.LAST_TIME_CONTACTED + " DESC, "
+                        + ContactsContract.Contacts.SORT_KEY_PRIMARY
+        );
+
+        try {
+            while (cursor != null && contactIds.size() < limit && cursor.moveToNext()) {
+                contactIds.add(cursor.getString(0));
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        Map<String, Contact> contacts = loadContactsByIds(contactIds);
+
+        List<Contact> favorites = new ArrayList<>(contacts.size());
+        for (String contactId : contactIds) {
+            Contact contact = contacts.get(contactId);
+            if (contact != null) {
+                favorites.add(contact);
+            }
+        }
+        return favorites;
+    }
+
+    /**
+     * Lists all contacts with only what the Contacts table itself has: their name, thumbnail and whether they're
+     * starred. No Data rows are read, so this is much faster than getContacts for showing a list of contacts.
+     *
+     * @param orderedContactIds receives the IDs of the contacts in the order they're listed, or null.
+     */
+    public WritableArray getContactSummaries(List<String> orderedContactIds) {
+        WritableArray summaries = Arguments.createArray();
+
+        Cursor cursor = contentResolver.query(
+                ContactsContract.Contacts.CONTENT_URI,
+                SUMMARY_PROJECTION.toArray(new String[SUMMARY_PROJECTION.size()]),
+                null,
+                null,
+                ContactsContract.Contacts.SORT_KEY_PRIMARY
+        );
+
+        try {
+            while (cursor != null && cursor.moveToNext()) {
+                String contactId = cursor.getString(0);
+                String thumbnailUri = cursor.getString(3);
+
+                WritableMap summary = Arguments.createMap();
+                summary.putString("recordID", contactId);
+                summary.putString("lookupKey", cursor.getString(1));
+                summary.putString("displayName", cursor.getString(2));
+                summary.putBoolean("hasThumbnail", thumbnailUri != null);
+                summary.putString("thumbnailPath", thumbnailUri == null ? "" : thumbnailUri);
+                summary.putBoolean("starred", cursor.getInt(4) == 1);
+                summaries.pushMap(summary);
+
+                if (orderedContactIds != null) {
+                    orderedContactIds.add(contactId);
+                }
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return summaries;
+    }
+
+    /**
+     * Same as getContactsByIds, but for raw contact IDs. They're resolved to contact IDs in batches first, so the
+     * whole lookup takes two chunked queries rather than two queries per raw contact.
+     */
+    public WritableArray getContactsByRawIds(List<String> rawContactIds) {
+        Map<String, String> contactIdsByRawId = getContactIdsForRawContactIds(new ArrayList<>(new LinkedHashSet<>(rawContactIds)));
+
+        Map<String, Contact> contacts = queryContactsIn(
+                ContactsContract.Data.CONTACT_ID,
+                new ArrayList<>(new LinkedHashSet<>(contactIdsByRawId.values())),
+                mimeTypeSelection(FULL_MIME_TYPES),
+                Arrays.asList(FULL_MIME_TYPES)
+        );
+
+        WritableArray result = Arguments.createArray();
+        for (String rawContactId : rawContactIds) {
+            String contactId = contactIdsByRawId.get(rawContactId);
+            Contact contact = contactId != null ? contacts.get(contactId) : null;
+            if (contact != null) {
+                WritableMap map = contact.toMap();
+                map.putString("rawContactId", rawContactId);
+                result.pushMap(map);
+            } else {
+                result.pushNull();
+            }
+        }
+        return result;
+    }
+
+    @NonNull
+    private Map<String, String> getContactIdsForRawContactIds(List<String> rawContactIds) {
+        Map<String, String> contactIdsByRawId = new HashMap<>();
+
+        for (int start = 0; start < rawContactIds.size(); start += MAX_IN_ARGUMENTS) {
+            List<String> chunk = rawContactIds.subList(start, Math.min(start + MAX_IN_ARGUMENTS, rawContactIds.size()));
+
             Cursor cursor = contentResolver.query(
-                    Uri.withAppendedPath(ContactsContract.Profile.CONTENT_URI, ContactsContract.Contacts.Data.CONTENT_DIRECTORY),
-                    JUST_ME_PROJECTION.toArray(new String[JUST_ME_PROJECTION.size()]),
-                    null,
-                    null,
+                    ContactsContract.RawContacts.CONTENT_URI,
+                    new String[]{ContactsContract.RawContacts._ID, ContactsContract.RawContacts.CONTACT_ID},
+                    inSelection(ContactsContract.RawContacts._ID, chunk.size()),
+                    chunk.toArray(new String[chunk.size()]),
                     null
             );
 
             try {
-                justMe = loadContactsFrom(cursor);
+                while (cursor != null && cursor.moveToNext()) {
+                    String contactId = cursor.getString(1);
+                    if (contactId != null) {
+                        contactIdsByRawId.put(cursor.getString(0), contactId);
+                    }
+                }
             } finally {
                 if (cursor != null) {
                     cursor.close();
@@ -184,18 +441,69 @@ public class ContactsProvider {
             }
         }
 
-        Map<String, Contact> everyoneElse;
-        {
+        return contactIdsByRawId;
+    }
+
+    /**
+     * Maps lookup keys stored by the app to the contacts they currently identify. Keys that still match a contact
+     * exactly are resolved together in one query. Only the remaining keys, e.g. of contacts that were joined or split
+     * since, go through CONTENT_LOOKUP_URI one by one, which lets the provider find them by their raw contacts.
+     * The result is in the order of the given keys. Null and empty keys are never queried and come back unresolved.
+     */
+    public WritableArray resolveLookupKeys(List<String> lookupKeys) {
+        Map<String, String[]> resolved = new HashMap<>();
+        Set<String> distinctKeySet = new LinkedHashSet<>();
+        for (String lookupKey : lookupKeys) {
+            // SQLite can't bind null, and an empty key matches no contact.
+            if (!TextUtils.isEmpty(lookupKey)) {
+                distinctKeySet.add(lookupKey);
+            }
+        }
+        List<String> distinctKeys = new ArrayList<>(distinctKeySet);
+
+        for (int start = 0; start < distinctKeys.size(); start += MAX_IN_ARGUMENTS) {
+            List<String> chunk = distinctKeys.subList(start, Math.min(start + MAX_IN_ARGUMENTS, distinctKeys.size()));
+
             Cursor cursor = contentResolver.query(
-                    ContactsContract.Data.CONTENT_URI,
-                    FULL_PROJECTION.toArray(new String[FULL_PROJECTION.size()]),
-                    ContactsContract.Data.MIMETYPE + "=? OR " + ContactsContract.Data.MIMETYPE + "=? OR " + ContactsContract.Data.MIMETYPE + "=? OR " + ContactsContract.Data.MIMETYPE + "=? OR " + ContactsContract.Data.MIMETYPE + "=? OR " + ContactsContract.Data.MIMETYPE + "=?",
-                    new String[]{Email.CONTENT_ITEM_TYPE, Phone.CONTENT_ITEM_TYPE, StructuredName.CONTENT_ITEM_TYPE, Organization.CONTENT_ITEM_TYPE, StructuredPostal.CONTENT_ITEM_TYPE, Event.CONTENT_ITEM_TYPE},
+                    ContactsContract.Contacts.CONTENT_URI,
+                    new String[]{ContactsContract.Contacts._ID, ContactsContract.Contacts.LOOKUP_KEY},
+                    inSelection(ContactsContract.Contacts.LOOKUP_KEY, chunk.size()),
+                    chunk.toArray(new String[chunk.size()]),
                     null
             );
 
             try {
-                everyoneElse = loadContactsFrom(cursor);
+                while (cursor != null && cursor.moveToNext()) {
+                    String lookupKey = cursor.getString(1);
+                    resolved.put(lookupKey, new String[]{cursor.getString(0), lookupKey});
+                }
+            } finally {
+                if (cursor != null) {
+                    cursor.close();
+                }
+            }
+        }
+
+        for (String lookupKey : distinctKeys) {
+            if (resolved.containsKey(lookupKey)) {
+                continue;
+            }
+
+            Cursor cursor = null;
+            try {
+                cursor = contentResolver.query(
+                        Uri.withAppendedPath(ContactsContract.Contacts.CONTENT_LOOKUP_URI, Uri.encode(lookupKey)),
+                        new String[]{ContactsContract.Contacts._ID, ContactsContract.Contacts.LOOKUP_KEY},
+                        null,
+                        null,
+                        null
+                );
+                if (cursor != null && cursor.moveToFirst()) {
+                    resolved.put(lookupKey, new String[]{cursor.getString(0), cursor.getString(1)});
+                }
+            } catch (IllegalArgumentException e) {
+                // The provider rejects keys it can't parse, which we treat like any other unknown key.
+                Log.w("ContactsProvider", e.toString());
             } finally {
                 if (cursor != null) {
                     cursor.close();
@@ -203,163 +511,614 @@ public class ContactsProvider {
             }
         }
 
+        WritableArray result = Arguments.createArray();
+        for (String lookupKey : lookupKeys) {
+            String[] contact = resolved.get(lookupKey);
+
+            WritableMap map = Arguments.createMap();
+            map.putString("lookupKey", lookupKey);
+            if (contact != null) {
+                map.putString("recordID", contact[0]);
+                map.putString("currentLookupKey", contact[1]);
+                map.putBoolean("changed", !lookupKey.equals(contact[1]));
+            } else {
+                map.putNull("recordID");
+                map.putNull("currentLookupKey");
+                map.putBoolean("changed", true);
+            }
+            result.pushMap(map);
+        }
+        return result;
+    }
+
+    public WritableArray getContacts() {
+        return getContacts(null);
+    }
+
+    public WritableArray getContacts(Filter filter) {
         WritableArray contacts = Arguments.createArray();
-        for (Contact contact : justMe.values()) {
+        for (Contact contact : loadContacts(filter).values()) {
             contacts.pushMap(contact.toMap());
         }
-        for (Contact contact : everyoneElse.values()) {
-            contacts.pushMap(contact.toMap());
+        return contacts;
+    }
+
+    /**
+     * Ranks every contact by how well its names, company and email addresses match the search string, tolerating
+     * typos. Contacts are scored as they're streamed from the provider and only the best matches are kept in a bounded
+     * heap, so memory stays proportional to the limit, and only those few are converted for the bridge. Each contact
+     * has its "score" between 0 and 1.
+     */
+    public WritableArray searchContactsFuzzy(String searchString, final int limit) throws IOException {
+        final FuzzyMatcher matcher = new FuzzyMatcher(searchString);
+        if (matcher.isEmpty() || limit <= 0) {
+            return Arguments.createArray();
         }
 
+        // The heap grows as needed, so a huge limit from JS doesn't allocate anything up front.
+        final PriorityQueue<ScoredContact> best = new PriorityQueue<>(Math.min(limit, INITIAL_FUZZY_CAPACITY) + 1);
+        forEachContact(new ContactVisitor() {
+            @Override
+            public void visit(Contact contact) {
+                float score = matcher.score(contact.searchWords());
+                if (score == 0 || (best.size() == limit && score <= best.peek().score)) {
+                    return;
+                }
+                best.add(new ScoredContact(contact, score));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        });
+
+        List<ScoredContact> ranked = new ArrayList<>(best);
+        Collections.sort(ranked, Collections.reverseOrder());
+
+        WritableArray contacts = Arguments.createArray();
+        for (ScoredContact scoredContact : ranked) {
+            WritableMap map = scoredContact.contact.toMap();
+            map.putDouble("score", scoredContact.score);
+            contacts.pushMap(map);
+        }
         return contacts;
     }
 
+    /**
+     * Hands every contact to the visitor as soon as all of its rows have been decoded. Rows are read in CONTACT_ID
+     * order, so only one contact is held in memory at a time however large the address book is. Returns the number
+     * of contacts visited.
+     */
+    public int forEachContact(ContactVisitor visitor) throws IOException {
+        Cursor cursor = contentResolver.query(
+                ContactsContract.Data.CONTENT_URI,
+                FULL_PROJECTION.toArray(new String[FULL_PROJECTION.size()]),
+                mimeTypeSelection(FULL_MIME_TYPES),
+                FULL_MIME_TYPES,
+                ContactsContract.Data.CONTACT_ID
+        );
+
+        int count = 0;
+        try {
+            Contact contact = null;
+            while (cursor != null && cursor.moveToNext()) {
+                String contactId = getContactId(cursor);
+                if (contact == null || !contact.contactId.equals(contactId)) {
+                    if (contact != null) {
+                        visitor.visit(contact);
+                        count++;
+                    }
+                    contact = new Contact(contactId);
+                }
+                decodeRow(cursor, contact);
+            }
+            if (contact != null) {
+                visitor.visit(contact);
+                count++;
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the recordID and fingerprint of every contact, so a sync only has to fetch and upload the contacts whose
+     * fingerprint changed since the last sync. Contacts are decoded one at a time and never converted for the bridge.
+     */
+    public WritableArray getContactFingerprints() throws IOException {
+        final WritableArray fingerprints = Arguments.createArray();
+        forEachContact(new ContactVisitor() {
+            @Override
+            public void visit(Contact contact) {
+                WritableMap map = Arguments.createMap();
+                map.putString("recordID", contact.contactId);
+                // JS numbers can't hold 64 bits, so the fingerprint is passed as hex.
+                map.putString("fingerprint", String.format(Locale.US, "%016x", contact.fingerprint()));
+                fingerprints.pushMap(map);
+            }
+        });
+        return fingerprints;
+    }
+
+    public int getContactCount() {
+        return count(ContactsContract.Contacts.CONTENT_URI, ContactsContract.Contacts._ID, null, null);
+    }
+
+    /**
+     * Counts contacts without decoding any of them: totals, raw contacts per account type and Data rows and contacts
+     * per field. Every count reads a single column, and no Contact objects or bridge maps are built per contact.
+     */
+    public WritableMap getContactStats() {
+        WritableMap stats = Arguments.createMap();
+        stats.putInt("total", getContactCount());
+        stats.putInt("withPhoto", count(ContactsContract.Contacts.CONTENT_URI, ContactsContract.Contacts._ID, ContactsContract.Contacts.PHOTO_ID + " IS NOT NULL", null));
+        stats.putInt("withPhoneNumber", count(ContactsContract.Contacts.CONTENT_URI, ContactsContract.Contacts._ID, ContactsContract.Contacts.HAS_PHONE_NUMBER + " = 1", null));
+        stats.putInt("starred", count(ContactsContract.Contacts.CONTENT_URI, ContactsContract.Contacts._ID, ContactsContract.Contacts.STARRED + " = 1", null));
+
+        Map<String, Integer> perAccountType = new HashMap<>();
+        Cursor rawContacts = contentResolver.query(
+                ContactsContract.RawContacts.CONTENT_URI,
+                new String[]{ContactsContract.RawContacts.ACCOUNT_TYPE},
+                ContactsContract.RawContacts.DELETED + " = 0",
+                null,
+                null
+        );
+        try {
+            while (rawContacts != null && rawContacts.moveToNext()) {
+                // Contacts that are only stored on the device have no account.
+                String accountType = rawContacts.isNull(0) ? "local" : rawContacts.getString(0);
+                Integer count = perAccountType.get(accountType);
+                perAccountType.put(accountType, count == null ? 1 : count + 1);
+            }
+        } finally {
+            if (rawContacts != null) {
+                rawContacts.close();
+            }
+        }
+        WritableMap accounts = Arguments.createMap();
+        for (Map.Entry<String, Integer> entry : perAccountType.entrySet()) {
+            accounts.putInt(entry.getKey(), entry.getValue());
+        }
+        stats.putMap("rawContactsPerAccountType", accounts);
+
+        Map<String, Integer> rowsPerMimeType = new HashMap<>();
+        Map<String, Set<String>> contactsPerMimeType = new HashMap<>();
+        Cursor data = contentResolver.query(
+                ContactsContract.Data.CONTENT_URI,
+                new String[]{ContactsContract.Data.MIMETYPE, ContactsContract.Data.CONTACT_ID},
+                mimeTypeSelection(FULL_MIME_TYPES),
+                FULL_MIME_TYPES,
+                null
+        );
+        try {
+            while (data != null && data.moveToNext()) {
+                String mimeType = data.getString(0);
+                Integer count = rowsPerMimeType.get(mimeType);
+                rowsPerMimeType.put(mimeType, count == null ? 1 : count + 1);
+
+                Set<String> contactIds = contactsPerMimeType.get(mimeType);
+                if (contactIds == null) {
+                    contactIds = new HashSet<>();
+                    contactsPerMimeType.put(mimeType, contactIds);
+                }
+                contactIds.add(data.getString(1));
+            }
+        } finally {
+            if (data != null) {
+                data.close();
+            }
+        }
+        WritableMap fields = Arguments.createMap();
+        for (String mimeType : FULL_MIME_TYPES) {
+            WritableMap field = Arguments.createMap();
+            Integer rows = rowsPerMimeType.get(mimeType);
+            Set<String> contactIds = contactsPerMimeType.get(mimeType);
+            field.putInt("rows", rows == null ? 0 : rows);
+            field.putInt("contacts", contactIds == null ? 0 : contactIds.size());
+            fields.putMap(fieldName(mimeType), field);
+        }
+        stats.putMap("fields", fields);
+
+        return stats;
+    }
+
+    private int count(Uri uri, String column, String selection, String[] selectionArgs) {
+        Cursor cursor = contentResolver.query(uri, new String[]{column}, selection, selectionArgs, null);
+        try {
+            return cursor != null ? cursor.getCount() : 0;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    private static String fieldName(String mimeType) {
+        switch (mimeType) {
+            case Email.CONTENT_ITEM_TYPE:
+                return "emailAddresses";
+            case Phone.CONTENT_ITEM_TYPE:
+                return "phoneNumbers";
+            case StructuredName.CONTENT_ITEM_TYPE:
+                return "names";
+            case Organization.CONTENT_ITEM_TYPE:
+                return "organizations";
+            case StructuredPostal.CONTENT_ITEM_TYPE:
+                return "postalAddresses";
+            case Event.CONTENT_ITEM_TYPE:
+                return "events";
+            case Im.CONTENT_ITEM_TYPE:
+                return "instantMessageAddresses";
+            case Website.CONTENT_ITEM_TYPE:
+                return "urlAddresses";
+            case Nickname.CONTENT_ITEM_TYPE:
+                return "nicknames";
+            case Relation.CONTENT_ITEM_TYPE:
+                return "contactRelations";
+            case Note.CONTENT_ITEM_TYPE:
+                return "notes";
+            default:
+                return mimeType;
+        }
+    }
+
     @NonNull
-    private Map<String, Contact> loadContactsFrom(Cursor cursor) {
+    Map<String, Contact> loadContacts(Filter filter) {
+        Map<String, Contact> justMe;
+        if (filter == null || filter.isEmpty()) {
+            justMe = loadProfile();
+        } else {
+            // The profile doesn't belong to any account or group, so it can never match a filter.
+            justMe = new LinkedHashMap<>();
+        }
+
+        Map<String, Contact> everyoneElse = queryContacts(mimeTypeSelection(FULL_MIME_TYPES), Arrays.asList(FULL_MIME_TYPES), filter);
+
+        Map<String, Contact> contacts = new LinkedHashMap<>(justMe);
+        contacts.putAll(everyoneElse);
+        return contacts;
+    }
+
+    /**
+     * Loads contacts in CONTACT_ID order until the time budget runs out, for callers that can't wait for the whole
+     * address book on a slow device. Pass the continuation of the previous page to read the next one. The deadline
+     * is checked every DEADLINE_CHECK_INTERVAL rows and only honoured at the start of a new contact, so a page never
+     * ends half-way through a contact and always has at least one contact unless nothing is left.
+     *
+     * Returns {contacts, continuation}, where the continuation is the CONTACT_ID of the last contact of the page, or
+     * null once every contact has been read. The profile comes first on the first page of an unfiltered load.
+     */
+    public WritableMap getContactsWithin(String searchString, String continuation, long budgetMillis) {
+        long deadline = SystemClock.elapsedRealtime() + budgetMillis;
+
+        Map<String, Contact> contacts = new LinkedHashMap<>();
+        if (continuation == null && TextUtils.isEmpty(searchString)) {
+            contacts.putAll(loadProfile());
+        }
+
+        String selection;
+        List<String> args = new ArrayList<>();
+        if (TextUtils.isEmpty(searchString)) {
+            selection = mimeTypeSelection(FULL_MIME_TYPES);
+            args.addAll(Arrays.asList(FULL_MIME_TYPES));
+        } else {
+            selection = ContactsContract.Contacts.DISPLAY_NAME_PRIMARY + " LIKE ?";
+            args.add("%" + searchString + "%");
+        }
+        if (continuation != null) {
+            selection = "(" + selection + ") AND " + ContactsContract.Data.CONTACT_ID + " > ?";
+            args.add(continuation);
+        }
+
+        Cursor cursor = contentResolver.query(
+                ContactsContract.Data.CONTENT_URI,
+                FULL_PROJECTION.toArray(new String[FULL_PROJECTION.size()]),
+                selection,
+                args.toArray(new String[args.size()]),
+                ContactsContract.Data.CONTACT_ID
+        );
+
+        String next;
+        try {
+            next = loadContactsFrom(cursor, contacts, deadline);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        WritableArray array = Arguments.createArray();
+        for (Contact contact : contacts.values()) {
+            array.pushMap(contact.toMap());
+        }
+
+        WritableMap page = Arguments.createMap();
+        page.putArray("contacts", array);
+        page.putString("continuation", next);
+        return page;
+    }
+
+    public WritableArray getGroups() {
+        WritableArray groups = Arguments.createArray();
+
+        Cursor cursor = contentResolver.query(
+                ContactsContract.Groups.CONTENT_SUMMARY_URI,
+                GROUP_PROJECTION.toArray(new String[GROUP_PROJECTION.size()]),
+                ContactsContract.Groups.DELETED + " = 0",
+                null,
+                ContactsContract.Groups.TITLE
+        );
+
+        try {
+            while (cursor != null && cursor.moveToNext()) {
+                WritableMap group = Arguments.createMap();
+                group.putString("identifier", cursor.getString(cursor.getColumnIndex(ContactsContract.Groups._ID)));
+                group.putString("name", cursor.getString(cursor.getColumnIndex(ContactsContract.Groups.TITLE)));
+                group.putString("accountName", cursor.getString(cursor.getColumnIndex(ContactsContract.Groups.ACCOUNT_NAME)));
+                group.putString("accountType", cursor.getString(cursor.getColumnIndex(ContactsContract.Groups.ACCOUNT_TYPE)));
+                group.putBoolean("visible", cursor.getInt(cursor.getColumnIndex(ContactsContract.Groups.GROUP_VISIBLE)) == 1);
+                group.putInt("contactCount", cursor.getInt(cursor.getColumnIndex(ContactsContract.Groups.SUMMARY_COUNT)));
+                groups.pushMap(group);
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return groups;
+    }
+
+    /**
+     * Queries the Data table for rows matching the selection, restricted to the accounts and groups of the filter.
+     * Account restrictions are added to the selection directly. Group restrictions are first resolved to the raw
+     * contacts that are members of the groups, so only their rows are read.
+     */
+    @NonNull
+    private Map<String, Contact> queryContacts(String selection, List<String> selectionArgs, Filter filter) {
+        List<String> args = new ArrayList<>(selectionArgs);
+        String filteredSelection = filter == null ? selection : filter.appendAccountSelection(selection, args);
+
+        if (filter == null || filter.groupIds.isEmpty()) {
+            Cursor cursor = contentResolver.query(
+                    ContactsContract.Data.CONTENT_URI,
+                    FULL_PROJECTION.toArray(new String[FULL_PROJECTION.size()]),
+                    filteredSelection,
+                    args.toArray(new String[args.size()]),
+                    null
+            );
+
+            try {
+                return loadContactsFrom(cursor);
+            } finally {
+                if (cursor != null) {
+                    cursor.close();
+                }
+            }
+        }
 
+        List<String> rawContactIds = getRawContactIdsInGroups(filter);
+        return queryContactsIn(ContactsContract.Data.RAW_CONTACT_ID, rawContactIds, filteredSelection, args);
+    }
+
+    /**
+     * Queries the Data table for rows whose column is one of the given values, splitting the values into chunks
+     * that stay below the SQLite argument limit. Contacts spread across chunks are merged.
+     */
+    @NonNull
+    private Map<String, Contact> queryContactsIn(String column, List<String> values, String selection, List<String> selectionArgs) {
         Map<String, Contact> map = new LinkedHashMap<>();
 
-        while (cursor != null && cursor.moveToNext()) {
+        for (int start = 0; start < values.size(); start += MAX_IN_ARGUMENTS) {
+            List<String> chunk = values.subList(start, Math.min(start + MAX_IN_ARGUMENTS, values.size()));
 
-            int columnIndexContactId = cursor.getColumnIndex(ContactsContract.Data.CONTACT_ID);
-            int columnIndexId = cursor.getColumnIndex(ContactsContract.Data._ID);
-            int columnIndexRawContactId = cursor.getColumnIndex(ContactsContract.Data.RAW_CONTACT_ID);
-            String contactId;
-            String id;
-            String rawContactId;
-            if (columnIndexContactId != -1) {
-                contactId = cursor.getString(columnIndexContactId);
-            } else {
-                //todo - double check this, it may not be necessary any more
-                contactId = String.valueOf(ID_FOR_PROFILE_CONTACT);//no contact id for 'ME' user
+            List<String> args = new ArrayList<>(selectionArgs);
+            args.addAll(chunk);
+            String chunkSelection = inSelection(column, chunk.size());
+            if (!TextUtils.isEmpty(selection)) {
+                chunkSelection = "(" + selection + ") AND " + chunkSelection;
             }
 
-            if (columnIndexId != -1) {
-                id = cursor.getString(columnIndexId);
-            } else {
-                //todo - double check this, it may not be necessary any more
-                id = String.valueOf(ID_FOR_PROFILE_CONTACT);//no contact id for 'ME' user
+            Cursor cursor = contentResolver.query(
+                    ContactsContract.Data.CONTENT_URI,
+                    FULL_PROJECTION.toArray(new String[FULL_PROJECTION.size()]),
+                    chunkSelection,
+                    args.toArray(new String[args.size()]),
+                    null
+            );
+
+            try {
+                loadContactsFrom(cursor, map);
+            } finally {
+                if (cursor != null) {
+                    cursor.close();
+                }
             }
+        }
 
-            if (columnIndexRawContactId != -1) {
-                rawContactId = cursor.getString(columnIndexRawContactId);
-            } else {
-                //todo - double check this, it may not be necessary any more
-                rawContactId = String.valueOf(ID_FOR_PROFILE_CONTACT);//no contact id for 'ME' user
+        return map;
+    }
+
+    @NonNull
+    private List<String> getRawContactIdsInGroups(Filter filter) {
+        List<String> args = new ArrayList<>();
+        args.add(GroupMembership.CONTENT_ITEM_TYPE);
+        args.addAll(filter.groupIds);
+        String selection = ContactsContract.Data.MIMETYPE + " = ? AND " + inSelection(GroupMembership.GROUP_ROW_ID, filter.groupIds.size());
+        selection = filter.appendAccountSelection(selection, args);
+
+        Set<String> rawContactIds = new LinkedHashSet<>();
+        Cursor cursor = contentResolver.query(
+                ContactsContract.Data.CONTENT_URI,
+                new String[]{ContactsContract.Data.RAW_CONTACT_ID},
+                selection,
+                args.toArray(new String[args.size()]),
+                null
+        );
+
+        try {
+            while (cursor != null && cursor.moveToNext()) {
+                rawContactIds.add(cursor.getString(0));
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
             }
+        }
+
+        return new ArrayList<>(rawContactIds);
+    }
+
+    private static String mimeTypeSelection(String[] mimeTypes) {
+        return inSelection(ContactsContract.Data.MIMETYPE, mimeTypes.length);
+    }
+
+    private static String inSelection(String column, int count) {
+        StringBuilder selection = new StringBuilder(column).append(" IN (");
+        for (int i = 0; i < count; i++) {
+            selection.append(i == 0 ? "?" : ",?");
+        }
+        return selection.append(")").toString();
+    }
+
+    @NonNull
+    private Map<String, Contact> loadContactsFrom(Cursor cursor) {
+        return loadContactsFrom(cursor, new LinkedHashMap<String, Contact>());
+    }
+
+    @NonNull
+    private Map<String, Contact> loadContactsFrom(Cursor cursor, Map<String, Contact> map) {
+
+        while (cursor != null && cursor.moveToNext()) {
+            String contactId = getContactId(cursor);
 
             if (!map.containsKey(contactId)) {
                 map.put(contactId, new Contact(contactId));
             }
 
-            Contact contact = map.get(contactId);
-            String mimeType = cursor.getString(cursor.getColumnIndex(ContactsContract.Data.MIMETYPE));
-            String name = cursor.getString(cursor.getColumnIndex(ContactsContract.Contacts.DISPLAY_NAME));
-            contact.rawContactId = rawContactId;
-            if (!TextUtils.isEmpty(name) && TextUtils.isEmpty(contact.displayName)) {
-                contact.displayName = name;
-            }
-            if (TextUtils.isEmpty(contact.photoUri)) {
-                String rawPhotoURI = cursor.getString(cursor.getColumnIndex(Contactables.PHOTO_URI));
-                if (!TextUtils.isEmpty(rawPhotoURI)) {
-                    contact.photoUri = rawPhotoURI;
-                    contact.hasPhoto = true;
+            decodeRow(cursor, map.get(contactId));
+        }
+
+        return map;
+    }
+
+    /**
+     * Reads a cursor ordered by CONTACT_ID into the map until the deadline has passed. Returns the ID of the last
+     * contact read if it stopped early, or null if the cursor was read to its end.
+     */
+    private String loadContactsFrom(Cursor cursor, Map<String, Contact> map, long deadline) {
+        String lastContactId = null;
+        boolean pastDeadline = false;
+        int rows = 0;
+
+        while (cursor != null && cursor.moveToNext()) {
+            String contactId = getContactId(cursor);
+
+            if (!contactId.equals(lastContactId)) {
+                // All rows of the previous contact have been read, so this is the place to stop.
+                if (pastDeadline) {
+                    return lastContactId;
                 }
+                map.put(contactId, new Contact(contactId));
+                lastContactId = contactId;
             }
-            if (mimeType.equals(StructuredName.CONTENT_ITEM_TYPE)) {
-                contact.givenName = cursor.getString(cursor.getColumnIndex(StructuredName.GIVEN_NAME));
-                contact.middleName = cursor.getString(cursor.getColumnIndex(StructuredName.MIDDLE_NAME));
-                contact.familyName = cursor.getString(cursor.getColumnIndex(StructuredName.FAMILY_NAME));
-                contact.prefix = cursor.getString(cursor.getColumnIndex(StructuredName.PREFIX));
-                contact.suffix = cursor.getString(cursor.getColumnIndex(StructuredName.SUFFIX));
-            } else if (mimeType.equals(Phone.CONTENT_ITEM_TYPE)) {
-                String phoneNumber = cursor.getString(cursor.getColumnIndex(Phone.NUMBER));
-                int type = cursor.getInt(cursor.getColumnIndex(Phone.TYPE));
-
-                if (!TextUtils.isEmpty(phoneNumber)) {
-                    String label;
-                    switch (type) {
-                        case Phone.TYPE_HOME:
-                            label = "home";
-                            break;
-                        case Phone.TYPE_WORK:
-                            label = "work";
-                            break;
-                        case Phone.TYPE_MOBILE:
-                            label = "mobile";
-                            break;
-                        default:
-                            label = "other";
-                    }
-                    contact.phones.add(new Contact.Item(label, phoneNumber, id));
-                }
-            } else if (mimeType.equals(Email.CONTENT_ITEM_TYPE)) {
-                String email = cursor.getString(cursor.getColumnIndex(Email.ADDRESS));
-                int type = cursor.getInt(cursor.getColumnIndex(Email.TYPE));
-                if (!TextUtils.isEmpty(email)) {
-                    String label;
-                    switch (type) {
-                        case Email.TYPE_HOME:
-                            label = "home";
-                            break;
-                        case Email.TYPE_WORK:
-                            label = "work";
-                            break;
-                        case Email.TYPE_MOBILE:
-                            label = "mobile";
-                            break;
-                        case Email.TYPE_CUSTOM:
-                            if (cursor.getString(cursor.getColumnIndex(Email.LABEL)) != null) {
-                                label = cursor.getString(cursor.getColumnIndex(Email.LABEL)).toLowerCase();
-                            } else {
-                                label = "";
-                            }
-                            break;
-                        default:
-                            label = "other";
-                    }
-                    contact.emails.add(new Contact.Item(label, email, id));
-                }
-            } else if (mimeType.equals(Organization.CONTENT_ITEM_TYPE)) {
-                contact.company = cursor.getString(cursor.getColumnIndex(Organization.COMPANY));
-                contact.jobTitle = cursor.getString(cursor.getColumnIndex(Organization.TITLE));
-                contact.department = cursor.getString(cursor.getColumnIndex(Organization.DEPARTMENT));
-            } else if (mimeType.equals(StructuredPostal.CONTENT_ITEM_TYPE)) {
-                contact.postalAddresses.add(new Contact.PostalAddressItem(cursor));
-            } else if (mimeType.equals(Event.CONTENT_ITEM_TYPE)) {
-                int eventType = cursor.getInt(cursor.getColumnIndex(Event.TYPE));
-                if (eventType == Event.TYPE_BIRTHDAY) {
-                    try {
-                        String birthday = cursor.getString(cursor.getColumnIndex(Event.START_DATE)).replace("--", "");
-                        String[] yearMonthDay = birthday.split("-");
-                        List<String> yearMonthDayList = Arrays.asList(yearMonthDay);
-
-                        if (yearMonthDayList.size() == 2) {
-                            // birthday is formatted "12-31"
-                            int month = Integer.parseInt(yearMonthDayList.get(0));
-                            int day = Integer.parseInt(yearMonthDayList.get(1));
-                            if (month >= 1 && month <= 12 && day >= 1 && day <= 31) {
-                                contact.birthday = new Contact.Birthday(month, day);
-                            }
-                        } else if (yearMonthDayList.size() == 3) {
-                            // birthday is formatted "1986-12-31"
-                            int year = Integer.parseInt(yearMonthDayList.get(0));
-                            int month = Integer.parseInt(yearMonthDayList.get(1));
-                            int day = Integer.parseInt(yearMonthDayList.get(2));
-                            if (year > 0 && month >= 1 && month <= 12 && day >= 1 && day <= 31) {
-                                contact.birthday = new Contact.Birthday(year, month, day);
-                            }
-                        }
-                    } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
-                        // whoops, birthday isn't in the format we expect
-                        Log.w("ContactsProvider", e.toString());
 
-                    }
-                }
+            decodeRow(cursor, map.get(contactId));
+
+            if (++rows % DEADLINE_CHECK_INTERVAL == 0 && SystemClock.elapsedRealtime() >= deadline) {
+                pastDeadline = true;
             }
         }
 
-        return map;
+        return null;
+    }
+
+    @NonNull
+    private Map<String, Contact> loadProfile() {
+        Cursor cursor = contentResolver.query(
+                Uri.withAppendedPath(ContactsContract.Profile.CONTENT_URI, ContactsContract.Contacts.Data.CONTENT_DIRECTORY),
+                JUST_ME_PROJECTION.toArray(new String[JUST_ME_PROJECTION.size()]),
+                null,
+                null,
+                null
+        );
+
+        try {
+            return loadContactsFrom(cursor);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    private static String getContactId(Cursor cursor) {
+        int columnIndexContactId = cursor.getColumnIndex(ContactsContract.Data.CONTACT_ID);
+        if (columnIndexContactId != -1) {
+            return cursor.getString(columnIndexContactId);
+        } else {
+            //todo - double check this, it may not be necessary any more
+            return String.valueOf(ID_FOR_PROFILE_CONTACT);//no contact id for 'ME' user
+        }
+    }
+
+    private void decodeRow(Cursor cursor, Contact contact) {
+        int columnIndexId = cursor.getColumnIndex(ContactsContract.Data._ID);
+        int columnIndexRawContactId = cursor.getColumnIndex(ContactsContract.Data.RAW_CONTACT_ID);
+        String id;
+        String rawContactId;
+        if (columnIndexId != -1) {
+            id = cursor.getString(columnIndexId);
+        } else {
+            //todo - double check this, it may not be necessary any more
+            id = String.valueOf(ID_FOR_PROFILE_CONTACT);//no contact id for 'ME' user
+        }
+
+        if (columnIndexRawContactId != -1) {
+            rawContactId = cursor.getString(columnIndexRawContactId);
+        } else {
+            //todo - double check this, it may not be necessary any more
+            rawContactId = String.valueOf(ID_FOR_PROFILE_CONTACT);//no contact id for 'ME' user
+        }
+
+        if (TextUtils.isEmpty(contact.lookupKey)) {
+            int columnIndexLookupKey = cursor.getColumnIndex(ContactsContract.Data.LOOKUP_KEY);
+            if (columnIndexLookupKey != -1) {
+                contact.lookupKey = cursor.getString(columnIndexLookupKey);
+            }
+        }
+        String mimeType = cursor.getString(cursor.getColumnIndex(ContactsContract.Data.MIMETYPE));
+        String name = cursor.getString(cursor.getColumnIndex(ContactsContract.Contacts.DISPLAY_NAME));
+        contact.rawContactId = rawContactId;
+
+        int columnIndexVersion = cursor.getColumnIndex(ContactsContract.RawContacts.VERSION);
+        if (columnIndexVersion != -1 && !contact.rawContactVersions.containsKey(rawContactId)) {
+            contact.rawContactVersions.put(rawContactId, cursor.getInt(columnIndexVersion));
+            int columnIndexAccountType = cursor.getColumnIndex(ContactsContract.RawContacts.ACCOUNT_TYPE);
+            if (columnIndexAccountType != -1) {
+                contact.rawContactAccountTypes.put(rawContactId, cursor.getString(columnIndexAccountType));
+            }
+        }
+        if (!TextUtils.isEmpty(name) && TextUtils.isEmpty(contact.displayName)) {
+            contact.displayName = name;
+        }
+        if (contact.sortKeyAlternative == null) {
+            contact.sortKeyAlternative = cursor.getString(cursor.getColumnIndex(ContactsContract.Contacts.SORT_KEY_ALTERNATIVE));
+        }
+        if (TextUtils.isEmpty(contact.photoUri)) {
+            String rawPhotoURI = cursor.getString(cursor.getColumnIndex(Contactables.PHOTO_URI));
+            if (!TextUtils.isEmpty(rawPhotoURI)) {
+                contact.photoUri = rawPhotoURI;
+                contact.hasPhoto = true;
+            }
+        }
+
+        DataRowDecoders.Decoder decoder = DataRowDecoders.get(mimeType);
+        if (decoder != null) {
+            decoder.decode(cursor, id, contact);
+        }
     }
 
     public String getPhotoUriFromContactId(String contactId) {
@@ -385,39 +1144,226 @@ public class ContactsProvider {
         return null;
     }
 
-    private static class Contact {
-        private String contactId;
-        private String rawContactId;
-        private String displayName;
-        private String givenName = "";
-        private String middleName = "";
-        private String familyName = "";
-        private String prefix = "";
-        private String suffix = "";
-        private String company = "";
-        private String jobTitle = "";
-        private String department = "";
-        private boolean hasPhoto = false;
-        private String photoUri;
-        private List<Item> emails = new ArrayList<>();
-        private List<Item> phones = new ArrayList<>();
-        private List<PostalAddressItem> postalAddresses = new ArrayList<>();
-        private Birthday birthday;
+    public byte[] getPhotoFromContactId(String contactId) {
+        Uri contactUri = ContentUris.withAppendedId(ContactsContract.Contacts.CONTENT_URI, Long.parseLong(contactId));
+        Cursor cursor = contentResolver.query(
+                Uri.withAppendedPath(contactUri, ContactsContract.Contacts.Photo.CONTENT_DIRECTORY),
+                new String[]{ContactsContract.Contacts.Photo.PHOTO},
+                null,
+                null,
+                null
+        );
+        try {
+            if (cursor != null && cursor.moveToNext()) {
+                return cursor.getBlob(0);
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return null;
+    }
+
+    interface ContactVisitor {
+        void visit(Contact contact) throws IOException;
+    }
+
+    /**
+     * Restricts contact queries to the raw contacts of one account and/or the members of a set of groups.
+     */
+    public static class Filter {
+        private String accountType;
+        private String accountName;
+        private List<String> groupIds = new ArrayList<>();
+
+        public Filter(String accountType, String accountName, List<String> groupIds) {
+            this.accountType = accountType;
+            this.accountName = accountName;
+            if (groupIds != null) {
+                this.groupIds.addAll(groupIds);
+            }
+        }
+
+        public static Filter fromReadableMap(ReadableMap options) {
+            if (options == null) {
+                return null;
+            }
+
+            String accountType = options.hasKey("accountType") && !options.isNull("accountType") ? options.getString("accountType") : null;
+            String accountName = options.hasKey("accountName") && !options.isNull("accountName") ? options.getString("accountName") : null;
+
+            List<String> groupIds = new ArrayList<>();
+            if (options.hasKey("groupIdentifiers") && !options.isNull("groupIdentifiers")) {
+                ReadableArray identifiers = options.getArray("groupIdentifiers");
+                for (int i = 0; i < identifiers.size(); i++) {
+                    groupIds.add(identifiers.getString(i));
+                }
+            }
+
+            return new Filter(accountType, accountName, groupIds);
+        }
+
+        public boolean isEmpty() {
+            return TextUtils.isEmpty(accountType) && TextUtils.isEmpty(accountName) && groupIds.isEmpty();
+        }
+
+        private String appendAccountSelection(String selection, List<String> selectionArgs) {
+            StringBuilder filtered = new StringBuilder();
+            if (!TextUtils.isEmpty(selection)) {
+                filtered.append("(").append(selection).append(")");
+            }
+            if (!TextUtils.isEmpty(accountType)) {
+                filtered.append(filtered.length() > 0 ? " AND " : "").append(ContactsContract.RawContacts.ACCOUNT_TYPE).append(" = ?");
+                selectionArgs.add(accountType);
+            }
+            if (!TextUtils.isEmpty(accountName)) {
+                filtered.append(filtered.length() > 0 ? " AND " : "").append(ContactsContract.RawContacts.ACCOUNT_NAME).append(" = ?");
+                selectionArgs.add(accountName);
+            }
+            return filtered.length() > 0 ? filtered.toString() : null;
+        }
+    }
+
+    private static class ScoredContact implements Comparable<ScoredContact> {
+        private final Contact contact;
+        private final float score;
+
+        ScoredContact(Contact contact, float score) {
+            this.contact = contact;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(@NonNull ScoredContact other) {
+            return Float.compare(score, other.score);
+        }
+    }
+
+    static class Contact {
+        String contactId;
+        String rawContactId;
+        String lookupKey;
+        String displayName;
+        String givenName = "";
+        String middleName = "";
+        String familyName = "";
+        String prefix = "";
+        String suffix = "";
+        String phoneticGivenName;
+        String phoneticMiddleName;
+        String phoneticFamilyName;
+        String sortKeyAlternative;
+        String company = "";
+        String jobTitle = "";
+        String department = "";
+        boolean hasPhoto = false;
+        String photoUri;
+        List<Item> emails = new ArrayList<>();
+        List<Item> phones = new ArrayList<>();
+        List<PostalAddressItem> postalAddresses = new ArrayList<>();
+        Birthday birthday;
+        List<DateItem> dates = new ArrayList<>();
+        List<InstantMessageItem> instantMessageAddresses = new ArrayList<>();
+        List<Item> urls = new ArrayList<>();
+        List<Item> relations = new ArrayList<>();
+        String nickname;
+        String note;
+        // The VERSION of every raw contact the contact is joined from, which the provider bumps on every change, and
+        // its account type, null for contacts stored on the device only.
+        Map<String, Integer> rawContactVersions = new LinkedHashMap<>();
+        Map<String, String>  rawContactAccountTypes = new HashMap<>();
+        // The Data rows of the fields a raw contact has only one of, by raw contact, so an update can change the row
+        // of the raw contact it writes to and compare against that row's own values.
+        Map<String, DataRow> nameRows = new HashMap<>();
+        Map<String, DataRow> organizationRows = new HashMap<>();
+        Map<String, DataRow> noteRows = new HashMap<>();
 
 
         public Contact(String contactId) {
             this.contactId = contactId;
         }
 
+        List<String> searchWords() {
+            List<String> words = new ArrayList<>();
+            words.addAll(FuzzyMatcher.words(displayName));
+            words.addAll(FuzzyMatcher.words(givenName));
+            words.addAll(FuzzyMatcher.words(middleName));
+            words.addAll(FuzzyMatcher.words(familyName));
+            words.addAll(FuzzyMatcher.words(company));
+            for (Item email : emails) {
+                int at = email.value.indexOf('@');
+                words.addAll(FuzzyMatcher.words(at == -1 ? email.value : email.value.substring(0, at)));
+            }
+            return words;
+        }
+
+        /**
+         * A 64-bit hash of the contact's content that doesn't depend on the order of its phone numbers, email
+         * addresses and postal addresses. Row IDs, raw contact and lookup keys and the photo URI are left out
+         * because they change without the contact being edited, e.g. when contacts are joined.
+         */
+        long fingerprint() {
+            long hash = Fingerprint.of(displayName, givenName, middleName, familyName, prefix, suffix, company, jobTitle, department);
+            hash = Fingerprint.mix(hash, hasPhoto ? 1 : 0);
+            if (birthday != null) {
+                hash = Fingerprint.mix(hash, birthday.year * 10000L + birthday.month * 100 + birthday.day);
+            }
+
+            long phonesHash = 0;
+            for (Item phone : phones) {
+                phonesHash += Fingerprint.of("phone", phone.label, phone.value);
+            }
+            long emailsHash = 0;
+            for (Item email : emails) {
+                emailsHash += Fingerprint.of("email", email.label, email.value);
+            }
+            long postalAddressesHash = 0;
+            for (PostalAddressItem postalAddress : postalAddresses) {
+                postalAddressesHash += postalAddress.fingerprint();
+            }
+            hash = Fingerprint.mix(Fingerprint.mix(Fingerprint.mix(hash, phonesHash), emailsHash), postalAddressesHash);
+
+            long othersHash = Fingerprint.of(nickname, note, phoneticGivenName, phoneticMiddleName, phoneticFamilyName);
+            for (DateItem date : dates) {
+                othersHash += Fingerprint.of("date", date.label, String.valueOf(date.date.year), String.valueOf(date.date.month), String.valueOf(date.date.day));
+            }
+            for (InstantMessageItem instantMessageAddress : instantMessageAddresses) {
+                othersHash += Fingerprint.of("instantMessageAddress", instantMessageAddress.label, instantMessageAddress.service, instantMessageAddress.username);
+            }
+            for (Item url : urls) {
+                othersHash += Fingerprint.of("url", url.label, url.value);
+            }
+            for (Item relation : relations) {
+                othersHash += Fingerprint.of("relation", relation.label, relation.value);
+            }
+            return Fingerprint.mix(hash, othersHash);
+        }
+
         public WritableMap toMap() {
             WritableMap contact = Arguments.createMap();
             contact.putString("recordID", contactId);
             contact.putString("rawContactId", rawContactId);
+            WritableMap versions = Arguments.createMap();
+            for (Map.Entry<String, Integer> version : rawContactVersions.entrySet()) {
+                versions.putInt(version.getKey(), version.getValue());
+            }
+            contact.putMap("rawContactVersions", versions);
+            contact.putString("lookupKey", lookupKey);
             contact.putString("givenName", givenName);
             contact.putString("middleName", middleName);
             contact.putString("familyName", familyName);
             contact.putString("prefix", prefix);
             contact.putString("suffix", suffix);
+            if (phoneticGivenName != null) {
+                contact.putString("phoneticGivenName", phoneticGivenName);
+            }
+            if (phoneticMiddleName != null) {
+                contact.putString("phoneticMiddleName", phoneticMiddleName);
+            }
+            if (phoneticFamilyName != null) {
+                contact.putString("phoneticFamilyName", phoneticFamilyName);
+            }
             contact.putString("company", company);
             contact.putString("jobTitle", jobTitle);
             contact.putString("department", department);
@@ -446,7 +1392,10 @@ public class ContactsProvider {
 
             WritableArray postalAddresses = Arguments.createArray();
             for (PostalAddressItem item : this.postalAddresses) {
-                postalAddresses.pushMap(item.map);
+                // A map can only be handed to the bridge once, and cached contacts are converted more than once.
+                WritableMap map = Arguments.createMap();
+                map.merge(item.map);
+                postalAddresses.pushMap(map);
             }
             contact.putArray("postalAddresses", postalAddresses);
 
@@ -460,6 +1409,58 @@ public class ContactsProvider {
                 contact.putMap("birthday", birthdayMap);
             }
 
+            WritableArray datesArray = Arguments.createArray();
+            for (DateItem item : dates) {
+                WritableMap map = Arguments.createMap();
+                map.putString("label", item.label);
+                map.putString("id", item.id);
+                if (item.date.year > 0) {
+                    map.putInt("year", item.date.year);
+                }
+                map.putInt("month", item.date.month);
+                map.putInt("day", item.date.day);
+                datesArray.pushMap(map);
+            }
+            contact.putArray("dates", datesArray);
+
+            WritableArray instantMessageAddressesArray = Arguments.createArray();
+            for (InstantMessageItem item : instantMessageAddresses) {
+                WritableMap map = Arguments.createMap();
+                map.putString("label", item.label);
+                map.putString("service", item.service);
+                map.putString("username", item.username);
+                map.putString("id", item.id);
+                instantMessageAddressesArray.pushMap(map);
+            }
+            contact.putArray("instantMessageAddresses", instantMessageAddressesArray);
+
+            WritableArray urlAddresses = Arguments.createArray();
+            for (Item item : urls) {
+                WritableMap map = Arguments.createMap();
+                map.putString("label", item.label);
+                map.putString("value", item.value);
+                map.putString("id", item.id);
+                urlAddresses.pushMap(map);
+            }
+            contact.putArray("urlAddresses", urlAddresses);
+
+            WritableArray contactRelations = Arguments.createArray();
+            for (Item item : relations) {
+                WritableMap map = Arguments.createMap();
+                map.putString("label", item.label);
+                map.putString("name", item.value);
+                map.putString("id", item.id);
+                contactRelations.pushMap(map);
+            }
+            contact.putArray("contactRelations", contactRelations);
+
+            if (nickname != null) {
+                contact.putString("nickname", nickname);
+            }
+            if (note != null) {
+                contact.putString("note", note);
+            }
+
             return contact;
         }
 
@@ -467,6 +1468,8 @@ public class ContactsProvider {
             public String label;
             public String value;
             public String id;
+            // The raw contact the row belongs to, for the kinds that can be updated.
+            String rawContactId;
 
             public Item(String label, String value, String id) {
                 this.id = id;
@@ -480,6 +1483,41 @@ public class ContactsProvider {
             }
         }
 
+        static class DataRow {
+            final String              id;
+            final Map<String, String> values = new HashMap<>();
+
+            DataRow(String id) {
+                this.id = id;
+            }
+        }
+
+        static class DateItem {
+            final String label;
+            final Birthday date;
+            final String id;
+
+            DateItem(String label, Birthday date, String id) {
+                this.label = label;
+                this.date = date;
+                this.id = id;
+            }
+        }
+
+        static class InstantMessageItem {
+            final String label;
+            final String service;
+            final String username;
+            final String id;
+
+            InstantMessageItem(String label, String service, String username, String id) {
+                this.label = label;
+                this.service = service;
+                this.username = username;
+                this.id = id;
+            }
+        }
+
         public static class Birthday {
             public int year = 0;
             public int month = 0;
@@ -495,6 +1533,41 @@ public class ContactsProvider {
                 this.month = month;
                 this.day = day;
             }
+
+            /**
+             * Parses the "--12-31" and "1986-12-31" forms of Event.START_DATE, returning null for anything else.
+             */
+            static Birthday parse(String startDate) {
+                if (startDate == null) {
+                    return null;
+                }
+                try {
+                    String birthday = startDate.replace("--", "");
+                    String[] yearMonthDay = birthday.split("-");
+                    List<String> yearMonthDayList = Arrays.asList(yearMonthDay);
+
+                    if (yearMonthDayList.size() == 2) {
+                        // birthday is formatted "12-31"
+                        int month = Integer.parseInt(yearMonthDayList.get(0));
+                        int day = Integer.parseInt(yearMonthDayList.get(1));
+                        if (month >= 1 && month <= 12 && day >= 1 && day <= 31) {
+                            return new Birthday(month, day);
+                        }
+                    } else if (yearMonthDayList.size() == 3) {
+                        // birthday is formatted "1986-12-31"
+                        int year = Integer.parseInt(yearMonthDayList.get(0));
+                        int month = Integer.parseInt(yearMonthDayList.get(1));
+                        int day = Integer.parseInt(yearMonthDayList.get(2));
+                        if (year > 0 && month >= 1 && month <= 12 && day >= 1 && day <= 31) {
+                            return new Birthday(year, month, day);
+                        }
+                    }
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    // whoops, birthday isn't in the format we expect
+                    Log.w("ContactsProvider", e.toString());
+                }
+                return null;
+            }
         }
 
         public static class PostalAddressItem {
@@ -515,6 +1588,16 @@ public class ContactsProvider {
                 putString(cursor, "country", StructuredPostal.COUNTRY);
             }
 
+            long fingerprint() {
+                return Fingerprint.of("postalAddress", getString("label"), getString("formattedAddress"), getString("street"),
+                        getString("pobox"), getString("neighborhood"), getString("city"), getString("region"),
+                        getString("postCode"), getString("country"));
+            }
+
+            String getString(String key) {
+                return map.hasKey(key) ? map.getString(key) : null;
+            }
+
             private void putString(Cursor cursor, String key, String androidKey) {
                 final String value = cursor.getString(cursor.getColumnIndex(androidKey));
                 if (!TextUtils.isEmpty(value))
@@ -0,0 +1,410 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import android.database.Cursor;
+import android.provider.ContactsContract;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static android.provider.ContactsContract.CommonDataKinds.Email;
+import static android.provider.ContactsContract.CommonDataKinds.Event;
+import static android.provider.ContactsContract.CommonDataKinds.Im;
+import static android.provider.ContactsContract.CommonDataKinds.Nickname;
+import static android.provider.ContactsContract.CommonDataKinds.Note;
+import static android.provider.ContactsContract.CommonDataKinds.Organization;
+import static android.provider.ContactsContract.CommonDataKinds.Phone;
+import static android.provider.ContactsContract.CommonDataKinds.Relation;
+import static android.provider.ContactsContract.CommonDataKinds.StructuredName;
+import static android.provider.ContactsContract.CommonDataKinds.StructuredPostal;
+import static android.provider.ContactsContract.CommonDataKinds.Website;
+
+/**
+ * The decoders of the Data rows a contact is read from, one per MIME type.
+ *
+ * Each decoder declares the columns it reads. ContactsProvider queries the union of those columns for rows of all the
+ * registered MIME types, so a field added here is read in the same single scan of the Data table as all others.
+ */
+final class DataRowDecoders {
+
+    abstract static class Decoder {
+        final List<String> columns;
+
+        Decoder(String... columns) {
+            this.columns = Arrays.asList(columns);
+        }
+
+        /**
+         * Adds the row the cursor is on to the contact. rowId is the row's Data._ID.
+         */
+        abstract void decode(Cursor cursor, String rowId, ContactsProvider.Contact contact);
+    }
+
+    private static final Map<String, Decoder> DECODERS = new LinkedHashMap<>();
+
+    static {
+        register(StructuredName.CONTENT_ITEM_TYPE, new Decoder(StructuredName.DISPLAY_NAME, StructuredName.GIVEN_NAME,
+                StructuredName.MIDDLE_NAME, StructuredName.FAMILY_NAME, StructuredName.PREFIX, StructuredName.SUFFIX,
+                StructuredName.PHONETIC_GIVEN_NAME, StructuredName.PHONETIC_MIDDLE_NAME, StructuredName.PHONETIC_FAMILY_NAME) {
+            @Override
+            void decode(Cursor cursor, String rowId, ContactsProvider.Contact contact) {
+                putRow(contact.nameRows, cursor, rowId, StructuredName.GIVEN_NAME, StructuredName.MIDDLE_NAME,
+                        StructuredName.FAMILY_NAME, StructuredName.PREFIX, StructuredName.SUFFIX);
+                contact.givenName = getString(cursor, StructuredName.GIVEN_NAME);
+                contact.middleName = getString(cursor, StructuredName.MIDDLE_NAME);
+                contact.familyName = getString(cursor, StructuredName.FAMILY_NAME);
+                contact.prefix = getString(cursor, StructuredName.PREFIX);
+                contact.suffix = getString(cursor, StructuredName.SUFFIX);
+                contact.phoneticGivenName = getString(cursor, StructuredName.PHONETIC_GIVEN_NAME);
+                contact.phoneticMiddleName = getString(cursor, StructuredName.PHONETIC_MIDDLE_NAME);
+                contact.phoneticFamilyName = getString(cursor, StructuredName.PHONETIC_FAMILY_NAME);
+            }
+        });
+
+        register(Phone.CONTENT_ITEM_TYPE, new Decoder(Phone.NUMBER, Phone.TYPE, Phone.LABEL) {
+            @Override
+            void decode(Cursor cursor, String rowId, ContactsProvider.Contact contact) {
+                String phoneNumber = getString(cursor, Phone.NUMBER);
+                if (TextUtils.isEmpty(phoneNumber)) {
+                    return;
+                }
+
+                String label;
+                switch (getInt(cursor, Phone.TYPE)) {
+                    case Phone.TYPE_HOME:
+                        label = "home";
+                        break;
+                    case Phone.TYPE_WORK:
+                        label = "work";
+                        break;
+                    case Phone.TYPE_MOBILE:
+                        label = "mobile";
+                        break;
+                    default:
+                        label = "other";
+                }
+                ContactsProvider.Contact.Item phone = new ContactsProvider.Contact.Item(label, phoneNumber, rowId);
+                phone.rawContactId = getString(cursor, ContactsContract.Data.RAW_CONTACT_ID);
+                contact.phones.add(phone);
+            }
+        });
+
+        register(Email.CONTENT_ITEM_TYPE, new Decoder(Email.DATA, Email.ADDRESS, Email.TYPE, Email.LABEL) {
+            @Override
+            void decode(Cursor cursor, String rowId, ContactsProvider.Contact contact) {
+                String email = getString(cursor, Email.ADDRESS);
+                if (TextUtils.isEmpty(email)) {
+                    return;
+                }
+
+                String label;
+                switch (getInt(cursor, Email.TYPE)) {
+                    case Email.TYPE_HOME:
+                        label = "home";
+                        break;
+                    case Email.TYPE_WORK:
+                        label = "work";
+                        break;
+                    case Email.TYPE_MOBILE:
+                        label = "mobile";
+                        break;
+                    case Email.TYPE_CUSTOM:
+                        label = getString(cursor, Email.LABEL) != null ? getString(cursor, Email.LABEL).toLowerCase(Locale.US) : "";
+                        break;
+                    default:
+                        label = "other";
+                }
+                ContactsProvider.Contact.Item item = new ContactsProvider.Contact.Item(label, email, rowId);
+                item.rawContactId = getString(cursor, ContactsContract.Data.RAW_CONTACT_ID);
+                contact.emails.add(item);
+            }
+        });
+
+        register(Organization.CONTENT_ITEM_TYPE, new Decoder(Organization.COMPANY, Organization.TITLE, Organization.DEPARTMENT) {
+            @Override
+            void decode(Cursor cursor, String rowId, ContactsProvider.Contact contact) {
+                putRow(contact.organizationRows, cursor, rowId, Organization.COMPANY, Organization.TITLE, Organization.DEPARTMENT);
+                contact.company = getString(cursor, Organization.COMPANY);
+                contact.jobTitle = getString(cursor, Organization.TITLE);
+                contact.department = getString(cursor, Organization.DEPARTMENT);
+            }
+        });
+
+        register(StructuredPostal.CONTENT_ITEM_TYPE, new Decoder(StructuredPostal.FORMATTED_ADDRESS, StructuredPostal.TYPE,
+                StructuredPostal.LABEL, StructuredPostal.STREET, StructuredPostal.POBOX, StructuredPostal.NEIGHBORHOOD,
+                StructuredPostal.CITY, StructuredPostal.REGION, StructuredPostal.POSTCODE, StructuredPostal.COUNTRY) {
+            @Override
+            void decode(Cursor cursor, String rowId, ContactsProvider.Contact contact) {
+                contact.postalAddresses.add(new ContactsProvider.Contact.PostalAddressItem(cursor));
+            }
+        });
+
+        register(Event.CONTENT_ITEM_TYPE, new Decoder(Event.START_DATE, Event.TYPE, Event.LABEL) {
+            @Override
+            void decode(Cursor cursor, String rowId, ContactsProvider.Contact contact) {
+                ContactsProvider.Contact.Birthday date = ContactsProvider.Contact.Birthday.parse(getString(cursor, Event.START_DATE));
+                if (date == null) {
+                    return;
+                }
+
+                String label;
+                switch (getInt(cursor, Event.TYPE)) {
+                    case Event.TYPE_BIRTHDAY:
+                        contact.birthday = date;
+                        return;
+                    case Event.TYPE_ANNIVERSARY:
+                        label = "anniversary";
+                        break;
+                    case Event.TYPE_CUSTOM:
+                        label = getLabel(cursor, Event.LABEL);
+                        break;
+                    default:
+                        label = "other";
+                }
+                contact.dates.add(new ContactsProvider.Contact.DateItem(label, date, rowId));
+            }
+        });
+
+        register(Im.CONTENT_ITEM_TYPE, new Decoder(Im.DATA, Im.TYPE, Im.LABEL, Im.PROTOCOL, Im.CUSTOM_PROTOCOL) {
+            @Override
+            void decode(Cursor cursor, String rowId, ContactsProvider.Contact contact) {
+                String username = getString(cursor, Im.DATA);
+                if (TextUtils.isEmpty(username)) {
+                    return;
+                }
+
+                String label;
+                switch (getInt(cursor, Im.TYPE)) {
+                    case Im.TYPE_HOME:
+                        label = "home";
+                        break;
+                    case Im.TYPE_WORK:
+                        label = "work";
+                        break;
+                    case Im.TYPE_CUSTOM:
+                        label = getLabel(cursor, Im.LABEL);
+                        break;
+                    default:
+                        label = "other";
+                }
+                contact.instantMessageAddresses.add(new ContactsProvider.Contact.InstantMessageItem(label, imService(cursor), username, rowId));
+            }
+        });
+
+        register(Website.CONTENT_ITEM_TYPE, new Decoder(Website.URL, Website.TYPE, Website.LABEL) {
+            @Override
+            void decode(Cursor cursor, String rowId, ContactsProvider.Contact contact) {
+                String url = getString(cursor, Website.URL);
+                if (TextUtils.isEmpty(url)) {
+                    return;
+                }
+
+                String label;
+                switch (getInt(cursor, Website.TYPE)) {
+                    case Website.TYPE_HOMEPAGE:
+                        label = "homepage";
+                        break;
+                    case Website.TYPE_BLOG:
+                        label = "blog";
+                        break;
+                    case Website.TYPE_PROFILE:
+                        label = "profile";
+                        break;
+                    case Website.TYPE_HOME:
+                        label = "home";
+                        break;
+                    case Website.TYPE_WORK:
+                        label = "work";
+                        break;
+                    case Website.TYPE_FTP:
+                        label = "ftp";
+                        break;
+                    case Website.TYPE_CUSTOM:
+                        label = getLabel(cursor, Website.LABEL);
+                        break;
+                    default:
+                        label = "other";
+                }
+                contact.urls.add(new ContactsProvider.Contact.Item(label, url, rowId));
+            }
+        });
+
+        register(Nickname.CONTENT_ITEM_TYPE, new Decoder(Nickname.NAME) {
+            @Override
+            void decode(Cursor cursor, String rowId, ContactsProvider.Contact contact) {
+                String nickname = getString(cursor, Nickname.NAME);
+                if (!TextUtils.isEmpty(nickname) && TextUtils.isEmpty(contact.nickname)) {
+                    contact.nickname = nickname;
+                }
+            }
+        });
+
+        register(Relation.CONTENT_ITEM_TYPE, new Decoder(Relation.NAME, Relation.TYPE, Relation.LABEL) {
+            @Override
+            void decode(Cursor cursor, String rowId, ContactsProvider.Contact contact) {
+                String name = getString(cursor, Relation.NAME);
+                if (TextUtils.isEmpty(name)) {
+                    return;
+                }
+
+                String label;
+                switch (getInt(cursor, Relation.TYPE)) {
+                    case Relation.TYPE_ASSISTANT:
+                        label = "assistant";
+                        break;
+                    case Relation.TYPE_BROTHER:
+                        label = "brother";
+                        break;
+                    case Relation.TYPE_CHILD:
+                        label = "child";
+                        break;
+                    case Relation.TYPE_DOMESTIC_PARTNER:
+                        label = "domestic partner";
+                        break;
+                    case Relation.TYPE_FATHER:
+                        label = "father";
+                        break;
+                    case Relation.TYPE_FRIEND:
+                        label = "friend";
+                        break;
+                    case Relation.TYPE_MANAGER:
+                        label = "manager";
+                        break;
+                    case Relation.TYPE_MOTHER:
+                        label = "mother";
+                        break;
+                    case Relation.TYPE_PARENT:
+                        label = "parent";
+                        break;
+                    case Relation.TYPE_PARTNER:
+                        label = "partner";
+                        break;
+                    case Relation.TYPE_REFERRED_BY:
+                        label = "referred by";
+                        break;
+                    case Relation.TYPE_RELATIVE:
+                        label = "relative";
+                        break;
+                    case Relation.TYPE_SISTER:
+                        label = "sister";
+                        break;
+                    case Relation.TYPE_SPOUSE:
+                        label = "spouse";
+                        break;
+                    case Relation.TYPE_CUSTOM:
+                        label = getLabel(cursor, Relation.LABEL);
+                        break;
+                    default:
+                        label = "other";
+                }
+                contact.relations.add(new ContactsProvider.Contact.Item(label, name, rowId));
+            }
+        });
+
+        register(Note.CONTENT_ITEM_TYPE, new Decoder(Note.NOTE) {
+            @Override
+            void decode(Cursor cursor, String rowId, ContactsProvider.Contact contact) {
+                String note = getString(cursor, Note.NOTE);
+                putRow(contact.noteRows, cursor, rowId, Note.NOTE);
+                if (!TextUtils.isEmpty(note) && TextUtils.isEmpty(contact.note)) {
+                    contact.note = note;
+                }
+            }
+        });
+    }
+
+    private static final String[] MIME_TYPES = DECODERS.keySet().toArray(new String[DECODERS.size()]);
+    private static final List<String> COLUMNS;
+
+    static {
+        Set<String> columns = new LinkedHashSet<>();
+        for (Decoder decoder : DECODERS.values()) {
+            columns.addAll(decoder.columns);
+        }
+        COLUMNS = Collections.unmodifiableList(new ArrayList<>(columns));
+    }
+
+    private DataRowDecoders() {
+    }
+
+    private static void register(String mimeType, Decoder decoder) {
+        DECODERS.put(mimeType, decoder);
+    }
+
+    /**
+     * The decoder of the MIME type, or null for rows that aren't decoded.
+     */
+    static Decoder get(String mimeType) {
+        return DECODERS.get(mimeType);
+    }
+
+    static String[] mimeTypes() {
+        return MIME_TYPES.clone();
+    }
+
+    /**
+     * The columns all decoders read together, without duplicates.
+     */
+    static List<String> columns() {
+        return COLUMNS;
+    }
+
+    /**
+     * Keeps the row and the values of its columns by its raw contact, for a field a raw contact has only one of.
+     */
+    private static void putRow(Map<String, ContactsProvider.Contact.DataRow> rows, Cursor cursor, String rowId, String... columns) {
+        ContactsProvider.Contact.DataRow row = new ContactsProvider.Contact.DataRow(rowId);
+        for (String column : columns) {
+            row.values.put(column, getString(cursor, column));
+        }
+        rows.put(getString(cursor, ContactsContract.Data.RAW_CONTACT_ID), row);
+    }
+
+    private static String getString(Cursor cursor, String column) {
+        return cursor.getString(cursor.getColumnIndex(column));
+    }
+
+    private static int getInt(Cursor cursor, String column) {
+        return cursor.getInt(cursor.getColumnIndex(column));
+    }
+
+    private static String getLabel(Cursor cursor, String labelColumn) {
+        String label = getString(cursor, labelColumn);
+        return label != null ? label : "";
+    }
+
+    private static String imService(Cursor cursor) {
+        if (cursor.isNull(cursor.getColumnIndex(Im.PROTOCOL))) {
+            return getLabel(cursor, Im.CUSTOM_PROTOCOL);
+        }
+        switch (getInt(cursor, Im.PROTOCOL)) {
+            case Im.PROTOCOL_AIM:
+                return "AIM";
+            case Im.PROTOCOL_MSN:
+                return "MSN";
+            case Im.PROTOCOL_YAHOO:
+                return "Yahoo";
+            case Im.PROTOCOL_SKYPE:
+                return "Skype";
+            case Im.PROTOCOL_QQ:
+                return "QQ";
+            case Im.PROTOCOL_GOOGLE_TALK:
+                return "Google Talk";
+            case Im.PROTOCOL_ICQ:
+                return "ICQ";
+            case Im.PROTOCOL_JABBER:
+                return "Jabber";
+            case Im.PROTOCOL_NETMEETING:
+                return "NetMeeting";
+            default:
+                return getLabel(cursor, Im.CUSTOM_PROTOCOL);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+/**
+ * 64-bit FNV-1a hashing of strings, for fingerprints that stay the same across app launches and devices, unlike
+ * String.hashCode which is only 32 bits wide.
+ */
+class Fingerprint {
+
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME        = 0x100000001b3L;
+
+    static long of(String... values) {
+        long hash = OFFSET_BASIS;
+        for (String value : values) {
+            if (value != null) {
+                for (int i = 0; i < value.length(); i++) {
+                    char c = value.charAt(i);
+                    hash = (hash ^ (c & 0xff)) * PRIME;
+                    hash = (hash ^ (c >>> 8)) * PRIME;
+                }
+            }
+            // Separates the values, so ("ab", "c") and ("a", "bc") hash differently.
+            hash = (hash ^ 0xff) * PRIME;
+        }
+        return hash;
+    }
+
+    static long mix(long hash, long value) {
+        for (int i = 0; i < 8; i++) {
+            hash = (hash ^ (value & 0xff)) * PRIME;
+            value >>>= 8;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,142 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Scores how well a search query matches a set of words, tolerating typos like "Jonh" for "John".
+ *
+ * Every word of the query has to match one of the words, either exactly, as a prefix, or within a small edit
+ * distance. Edit distances are computed with an early cutoff, so words that are obviously different cost only a few
+ * character comparisons.
+ */
+class FuzzyMatcher {
+
+    private final List<String> queryWords;
+
+    FuzzyMatcher(String query) {
+        queryWords = words(query);
+    }
+
+    boolean isEmpty() {
+        return queryWords.isEmpty();
+    }
+
+    /**
+     * Returns a score between 0 (no match) and 1 (every query word matches a word exactly).
+     */
+    float score(List<String> words) {
+        if (queryWords.isEmpty()) {
+            return 0;
+        }
+
+        float total = 0;
+        for (String queryWord : queryWords) {
+            float best = 0;
+            for (String word : words) {
+                best = Math.max(best, scoreWord(queryWord, word));
+                if (best == 1) {
+                    break;
+                }
+            }
+            if (best == 0) {
+                return 0;
+            }
+            total += best;
+        }
+        return total / queryWords.size();
+    }
+
+    private static float scoreWord(String queryWord, String word) {
+        if (word.equals(queryWord)) {
+            return 1;
+        }
+        if (word.startsWith(queryWord)) {
+            // Prefer "jo" -> "joe" over "jo" -> "jonathan".
+            return 0.9f - 0.2f * (word.length() - queryWord.length()) / word.length();
+        }
+
+        int maxDistance = queryWord.length() <= 2 ? 0 : queryWord.length() <= 5 ? 1 : 2;
+        if (maxDistance == 0) {
+            return 0;
+        }
+
+        int distance = distance(queryWord, word, maxDistance);
+        if (distance <= maxDistance) {
+            return 0.7f - 0.15f * distance;
+        }
+
+        // While the user is still typing, the query may be a misspelled start of the word.
+        if (word.length() > queryWord.length()) {
+            distance = distance(queryWord, word.substring(0, queryWord.length()), maxDistance);
+            if (distance <= maxDistance) {
+                return 0.6f - 0.15f * distance;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Optimal string alignment distance, i.e. Levenshtein with transpositions of adjacent characters, that gives up
+     * as soon as the distance is known to be greater than maxDistance and returns maxDistance + 1 in that case.
+     */
+    static int distance(String a, String b, int maxDistance) {
+        if (Math.abs(a.length() - b.length()) > maxDistance) {
+            return maxDistance + 1;
+        }
+
+        int[] previousPrevious = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMinimum = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    current[j] = Math.min(current[j], previousPrevious[j - 2] + 1);
+                }
+                rowMinimum = Math.min(rowMinimum, current[j]);
+            }
+            if (rowMinimum > maxDistance) {
+                return maxDistance + 1;
+            }
+
+            int[] recycled = previousPrevious;
+            previousPrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+
+        return previous[b.length()];
+    }
+
+    /**
+     * Splits text into lower case words, dropping punctuation.
+     */
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+
+        String lowerCase = text.toLowerCase(Locale.getDefault());
+        int start = -1;
+        for (int i = 0; i <= lowerCase.length(); i++) {
+            boolean letterOrDigit = i < lowerCase.length() && Character.isLetterOrDigit(lowerCase.charAt(i));
+            if (letterOrDigit && start == -1) {
+                start = i;
+            } else if (!letterOrDigit && start != -1) {
+                words.add(lowerCase.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+}
@@ -0,0 +1,161 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.provider.ContactsContract;
+import android.text.TextUtils;
+import android.util.Base64;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static android.provider.ContactsContract.CommonDataKinds.Email;
+import static android.provider.ContactsContract.CommonDataKinds.Phone;
+
+/**
+ * Hashes the phone numbers and email addresses of all contacts with a salt, for contact discovery that doesn't upload
+ * the identifiers themselves.
+ *
+ * Only Phone and Email rows are read. Phone numbers are normalized to E.164 and email addresses to lower case, so the
+ * same identifier hashes the same on every device. The hashing is spread over one worker per core, each reusing a
+ * single MessageDigest.
+ */
+class IdentifierHasher {
+
+    private static final int     HASH_LENGTH = 32;
+    private static final Charset UTF_8       = Charset.forName("UTF-8");
+
+    private final ContentResolver contentResolver;
+
+    IdentifierHasher(ContentResolver contentResolver) {
+        this.contentResolver = contentResolver;
+    }
+
+    /**
+     * Returns the SHA-256 hashes of salt + identifier packed into one base64 string of 32-byte hashes, with the
+     * contact ID and kind ("phoneNumber" or "emailAddress") of each hash at the same index of two arrays.
+     */
+    WritableMap hash(String salt) throws NoSuchAlgorithmException, InterruptedException, ExecutionException {
+        final List<String> contactIds = new ArrayList<>();
+        final List<String> kinds = new ArrayList<>();
+        final List<String> identifiers = new ArrayList<>();
+        readIdentifiers(contactIds, kinds, identifiers);
+
+        // Fail early, on this thread, if SHA-256 isn't available.
+        MessageDigest.getInstance("SHA-256");
+
+        final byte[] saltBytes = salt.getBytes(UTF_8);
+        final byte[] packed = new byte[identifiers.size() * HASH_LENGTH];
+
+        int workers = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), identifiers.size() / 256 + 1));
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            int chunkSize = (identifiers.size() + workers - 1) / workers;
+            for (int start = 0; start < identifiers.size(); start += chunkSize) {
+                final int from = start;
+                final int to = Math.min(start + chunkSize, identifiers.size());
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                        for (int i = from; i < to; i++) {
+                            digest.update(saltBytes);
+                            digest.update(identifiers.get(i).getBytes(UTF_8));
+                            digest.digest(packed, i * HASH_LENGTH, HASH_LENGTH);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        WritableMap result = Arguments.createMap();
+        result.putString("hashes", Base64.encodeToString(packed, Base64.NO_WRAP));
+        result.putInt("hashLength", HASH_LENGTH);
+        result.putArray("recordIDs", Arguments.fromList(contactIds));
+        result.putArray("kinds", Arguments.fromList(kinds));
+        return result;
+    }
+
+    private void readIdentifiers(List<String> contactIds, List<String> kinds, List<String> identifiers) {
+        Cursor cursor = contentResolver.query(
+                ContactsContract.Data.CONTENT_URI,
+                new String[]{ContactsContract.Data.CONTACT_ID, ContactsContract.Data.MIMETYPE, ContactsContract.Data.DATA1, Phone.NORMALIZED_NUMBER},
+                ContactsContract.Data.MIMETYPE + " IN (?,?)",
+                new String[]{Phone.CONTENT_ITEM_TYPE, Email.CONTENT_ITEM_TYPE},
+                null
+        );
+
+        Set<String> seen = new HashSet<>();
+        try {
+            while (cursor != null && cursor.moveToNext()) {
+                String contactId = cursor.getString(0);
+                boolean isPhone = Phone.CONTENT_ITEM_TYPE.equals(cursor.getString(1));
+                String identifier = isPhone ? normalizePhoneNumber(cursor.getString(2), cursor.getString(3)) : normalizeEmail(cursor.getString(2));
+
+                if (identifier == null || !seen.add(contactId + "\n" + identifier)) {
+                    continue;
+                }
+                contactIds.add(contactId);
+                kinds.add(isPhone ? "phoneNumber" : "emailAddress");
+                identifiers.add(identifier);
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Prefers the E.164 form the provider computed when the number was saved. Numbers without one, e.g. because the
+     * country couldn't be determined, keep their digits and a leading "+" if they had one.
+     */
+    static String normalizePhoneNumber(String number, String normalizedNumber) {
+        if (!TextUtils.isEmpty(normalizedNumber)) {
+            return normalizedNumber;
+        }
+        if (TextUtils.isEmpty(number)) {
+            return null;
+        }
+
+        StringBuilder digits = new StringBuilder(number.length());
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            } else if (c == '+' && digits.length() == 0) {
+                digits.append(c);
+            }
+        }
+        return digits.length() > 0 && !(digits.length() == 1 && digits.charAt(0) == '+') ? digits.toString() : null;
+    }
+
+    static String normalizeEmail(String email) {
+        if (TextUtils.isEmpty(email)) {
+            return null;
+        }
+        String normalized = email.trim().toLowerCase(Locale.US);
+        return normalized.isEmpty() ? null : normalized;
+    }
+}
@@ -0,0 +1,205 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.provider.ContactsContract;
+import android.text.TextUtils;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static android.provider.ContactsContract.CommonDataKinds.Organization;
+
+/**
+ * The companies contacts work for, with the contacts of every company grouped by department.
+ *
+ * Only Organization rows are read to build the index. Companies are grouped by a normalized key, so "Acme, Inc." and
+ * "ACME Inc" are the same company: accents, punctuation, case and a trailing legal form are ignored. Each company is
+ * named by the spelling most of its contacts use. Contacts themselves aren't decoded until they're asked for.
+ */
+class OrganizationIndex {
+
+    private static final Set<String> LEGAL_FORMS = new HashSet<>(Arrays.asList(
+            "ag", "co", "company", "corp", "corporation", "gmbh", "inc", "incorporated", "llc", "llp", "lp", "ltd",
+            "limited", "plc", "sa", "sarl", "srl"
+    ));
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    private OrganizationIndex() {
+    }
+
+    static OrganizationIndex build(ContentResolver contentResolver) {
+        OrganizationIndex index = new OrganizationIndex();
+
+        Cursor cursor = contentResolver.query(
+                ContactsContract.Data.CONTENT_URI,
+                new String[]{ContactsContract.Data.CONTACT_ID, Organization.COMPANY, Organization.DEPARTMENT},
+                ContactsContract.Data.MIMETYPE + " = ?",
+                new String[]{Organization.CONTENT_ITEM_TYPE},
+                ContactsContract.Contacts.SORT_KEY_PRIMARY
+        );
+
+        try {
+            while (cursor != null && cursor.moveToNext()) {
+                String company = cursor.getString(1);
+                String key = normalize(company);
+                if (key.isEmpty()) {
+                    continue;
+                }
+
+                Entry entry = index.entries.get(key);
+                if (entry == null) {
+                    entry = new Entry(key);
+                    index.entries.put(key, entry);
+                }
+                entry.add(cursor.getString(0), company.trim(), cursor.getString(2));
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Returns every company with its key, name, number of contacts and departments, the largest companies first.
+     */
+    WritableArray organizations() {
+        List<Entry> sorted = new ArrayList<>(entries.values());
+        Collections.sort(sorted, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                if (a.contactIds.size() != b.contactIds.size()) {
+                    return b.contactIds.size() - a.contactIds.size();
+                }
+                return a.key.compareTo(b.key);
+            }
+        });
+
+        WritableArray organizations = Arguments.createArray();
+        for (Entry entry : sorted) {
+            WritableArray departments = Arguments.createArray();
+            for (Department department : entry.departments.values()) {
+                WritableMap map = Arguments.createMap();
+                map.putString("name", department.name);
+                map.putInt("count", department.contactIds.size());
+                departments.pushMap(map);
+            }
+
+            WritableMap map = Arguments.createMap();
+            map.putString("key", entry.key);
+            map.putString("name", entry.name());
+            map.putInt("count", entry.contactIds.size());
+            map.putArray("departments", departments);
+            organizations.pushMap(map);
+        }
+        return organizations;
+    }
+
+    /**
+     * Returns the IDs of the contacts working for the company with the key, sorted by name, or an empty list if there
+     * is no such company.
+     */
+    List<String> contactIds(String key) {
+        Entry entry = entries.get(key);
+        return entry != null ? new ArrayList<>(entry.contactIds) : new ArrayList<String>();
+    }
+
+    /**
+     * Lower-cases the company name, removes accents and punctuation, and drops a trailing legal form.
+     */
+    static String normalize(String company) {
+        if (TextUtils.isEmpty(company)) {
+            return "";
+        }
+
+        String decomposed = Normalizer.normalize(company, Normalizer.Form.NFD);
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= decomposed.length(); i++) {
+            char c = i < decomposed.length() ? decomposed.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (Character.getType(c) == Character.NON_SPACING_MARK || c == '.' || c == '\'') {
+                // Accents are dropped, and "Inc." or "Macy's" stay one word.
+            } else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+
+        // "Co" alone is a company name, not a legal form.
+        while (words.size() > 1 && LEGAL_FORMS.contains(words.get(words.size() - 1))) {
+            words.remove(words.size() - 1);
+        }
+        return TextUtils.join(" ", words);
+    }
+
+    private static class Entry {
+        private final String                  key;
+        private final Set<String>             contactIds  = new LinkedHashSet<>();
+        private final Map<String, Integer>    spellings   = new HashMap<>();
+        private final Map<String, Department> departments = new LinkedHashMap<>();
+
+        Entry(String key) {
+            this.key = key;
+        }
+
+        void add(String contactId, String company, String department) {
+            // A contact joined from several raw contacts may list the same company more than once.
+            if (contactIds.add(contactId)) {
+                Integer count = spellings.get(company);
+                spellings.put(company, count == null ? 1 : count + 1);
+            }
+
+            if (!TextUtils.isEmpty(department) && !department.trim().isEmpty()) {
+                String departmentKey = department.trim().toLowerCase(Locale.US);
+                Department existing = departments.get(departmentKey);
+                if (existing == null) {
+                    existing = new Department(department.trim());
+                    departments.put(departmentKey, existing);
+                }
+                existing.contactIds.add(contactId);
+            }
+        }
+
+        String name() {
+            String name = null;
+            int count = 0;
+            for (Map.Entry<String, Integer> spelling : spellings.entrySet()) {
+                if (spelling.getValue() > count || (spelling.getValue() == count && spelling.getKey().compareTo(name) < 0)) {
+                    name = spelling.getKey();
+                    count = spelling.getValue();
+                }
+            }
+            return name;
+        }
+    }
+
+    private static class Department {
+        private final String      name;
+        private final Set<String> contactIds = new HashSet<>();
+
+        Department(String name) {
+            this.name = name;
+        }
+    }
+}
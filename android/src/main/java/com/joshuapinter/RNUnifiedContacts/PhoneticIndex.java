@@ -0,0 +1,214 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.icu.text.Transliterator;
+import android.os.Build;
+import android.provider.ContactsContract;
+import android.text.TextUtils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static android.provider.ContactsContract.CommonDataKinds.StructuredName;
+
+/**
+ * Latin-script search keys for the names of all contacts, so "zhang" finds a Zhang written in Chinese characters and
+ * "ivan" an Ivan written in Cyrillic.
+ *
+ * The keys of a contact are its names, phonetic names and alternative sort key, transliterated to lower case ASCII
+ * with ICU on Android 7 and later. Earlier versions only have their accents removed. Transliterating is slow, so the
+ * keys of every contact are kept and only computed again for contacts whose names changed.
+ */
+class PhoneticIndex {
+
+    private static final String[] PROJECTION = {
+            ContactsContract.Data.CONTACT_ID,
+            ContactsContract.Contacts.DISPLAY_NAME,
+            ContactsContract.Contacts.SORT_KEY_ALTERNATIVE,
+            StructuredName.GIVEN_NAME,
+            StructuredName.MIDDLE_NAME,
+            StructuredName.FAMILY_NAME,
+            StructuredName.PHONETIC_GIVEN_NAME,
+            StructuredName.PHONETIC_MIDDLE_NAME,
+            StructuredName.PHONETIC_FAMILY_NAME,
+    };
+
+    private final ContentResolver contentResolver;
+    private final Latinizer       latinizer;
+
+    private Map<String, Entry> entries = new HashMap<>();
+
+    private volatile boolean stale = true;
+
+    PhoneticIndex(ContentResolver contentResolver) {
+        this.contentResolver = contentResolver;
+        this.latinizer = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N ? new IcuLatinizer() : new Latinizer();
+    }
+
+    /**
+     * Makes the next search read the names again. Doesn't wait for a search in progress, so it's safe to call from
+     * the main thread.
+     */
+    void invalidate() {
+        stale = true;
+    }
+
+    /**
+     * Returns the IDs of the contacts with a key containing the search text, those where it starts a word first.
+     */
+    synchronized List<String> search(String searchText) {
+        if (stale) {
+            stale = false;
+            refresh();
+        }
+
+        String query = searchText == null ? "" : latinizer.latinize(searchText);
+        List<String> wordMatches = new ArrayList<>();
+        List<String> otherMatches = new ArrayList<>();
+        if (query.isEmpty()) {
+            return wordMatches;
+        }
+
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            int match = entry.getValue().match(query);
+            if (match == Entry.WORD_MATCH) {
+                wordMatches.add(entry.getKey());
+            } else if (match == Entry.MATCH) {
+                otherMatches.add(entry.getKey());
+            }
+        }
+
+        wordMatches.addAll(otherMatches);
+        return wordMatches;
+    }
+
+    /**
+     * Reads the names of all contacts, reusing the keys of the contacts whose names are unchanged.
+     */
+    private void refresh() {
+        Map<String, Set<String>> namesByContactId = new HashMap<>();
+
+        Cursor cursor = contentResolver.query(
+                ContactsContract.Data.CONTENT_URI,
+                PROJECTION,
+                ContactsContract.Data.MIMETYPE + " = ?",
+                new String[]{StructuredName.CONTENT_ITEM_TYPE},
+                null
+        );
+
+        try {
+            while (cursor != null && cursor.moveToNext()) {
+                String contactId = cursor.getString(0);
+                Set<String> names = namesByContactId.get(contactId);
+                if (names == null) {
+                    names = new LinkedHashSet<>();
+                    namesByContactId.put(contactId, names);
+                }
+                for (int i = 1; i < PROJECTION.length; i++) {
+                    String name = cursor.getString(i);
+                    if (!TextUtils.isEmpty(name)) {
+                        names.add(name);
+                    }
+                }
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        Map<String, Entry> refreshed = new HashMap<>(namesByContactId.size() * 2);
+        for (Map.Entry<String, Set<String>> names : namesByContactId.entrySet()) {
+            String source = TextUtils.join("\n", names.getValue());
+            Entry entry = entries.get(names.getKey());
+            if (entry == null || !entry.source.equals(source)) {
+                entry = new Entry(source, keys(names.getValue()));
+            }
+            refreshed.put(names.getKey(), entry);
+        }
+        entries = refreshed;
+    }
+
+    private List<String> keys(Set<String> names) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (String name : names) {
+            String key = latinizer.latinize(name);
+            if (!key.isEmpty()) {
+                keys.add(key);
+                // Lets "zhangwei" match "zhang wei".
+                keys.add(key.replace(" ", ""));
+            }
+        }
+        return new ArrayList<>(keys);
+    }
+
+    private static class Entry {
+        static final int NO_MATCH   = 0;
+        static final int MATCH      = 1;
+        static final int WORD_MATCH = 2;
+
+        private final String       source;
+        private final List<String> keys;
+
+        Entry(String source, List<String> keys) {
+            this.source = source;
+            this.keys = keys;
+        }
+
+        int match(String query) {
+            int match = NO_MATCH;
+            for (String key : keys) {
+                int index = key.indexOf(query);
+                while (index != -1) {
+                    if (index == 0 || key.charAt(index - 1) == ' ') {
+                        return WORD_MATCH;
+                    }
+                    match = MATCH;
+                    index = key.indexOf(query, index + 1);
+                }
+            }
+            return match;
+        }
+    }
+
+    /**
+     * Removes accents and lower-cases, keeping letters and digits and single spaces between words.
+     */
+    private static class Latinizer {
+        String latinize(String text) {
+            return clean(Normalizer.normalize(text, Normalizer.Form.NFD));
+        }
+
+        static String clean(String text) {
+            StringBuilder cleaned = new StringBuilder(text.length());
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (Character.isLetterOrDigit(c)) {
+                    cleaned.append(Character.toLowerCase(c));
+                } else if (Character.getType(c) != Character.NON_SPACING_MARK && cleaned.length() > 0
+                        && cleaned.charAt(cleaned.length() - 1) != ' ') {
+                    cleaned.append(' ');
+                }
+            }
+            return cleaned.toString().trim();
+        }
+    }
+
+    /**
+     * Transliterates any script to ASCII first. Only loaded on Android 7 and later, which have android.icu.
+     */
+    private static class IcuLatinizer extends Latinizer {
+        private final Transliterator transliterator = Transliterator.getInstance("Any-Latin; Latin-ASCII");
+
+        @Override
+        String latinize(String text) {
+            return clean(transliterator.transliterate(text));
+        }
+    }
+}
@@ -6,9 +6,14 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
+import android.database.ContentObserver;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
 import android.preference.PreferenceManager;
 import android.provider.ContactsContract;
 import android.provider.Settings;
@@ -24,32 +29,113 @@ import com.facebook.react.bridge.Callback;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
-
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 class RNUnifiedContactsModule extends ReactContextBaseJavaModule {
 
     private static final int ON_REQUEST_PERMISSIONS_RESULT_REQUEST_READ_CONTACTS            = 0;
 
+    private static final String CONTACTS_CHANGED_EVENT = "RNUnifiedContactsChanged";
+    private static final String EXPORT_PROGRESS_EVENT  = "RNUnifiedContactsExportProgress";
+    private static final String IMPORT_PROGRESS_EVENT  = "RNUnifiedContactsImportProgress";
+
+    private static final int    PROGRESS_EVENT_INTERVAL = 100;
+
+    private static final int    MAX_PHONETIC_RESULTS = 100;
+
+    private static final int    MAX_SEARCH_SESSIONS = 4;
+
+    private static final long   DEFAULT_TIME_BUDGET_MS = 1000;
+
     private static Callback          callback;
 
     private        ContentResolver   contentResolver;
     private        SharedPreferences sharedPreferences;
 
+    private        ContactsChangeObserver contactsChangeObserver;
+
+    // Change notifications of the contacts provider are handled on this thread, never on the main thread.
+    private        HandlerThread     observerThread;
+
+    // Indexes built from the address book are kept between calls and dropped as soon as the address book changes.
+    // They're built outside of any lock, so dropping them never waits for a build in progress.
+    private        ContentObserver   cacheInvalidationObserver;
+    private final  CachedValue<T9Index>            t9Index            = new CachedValue<>();
+    private final  CachedValue<BirthdayIndex>      birthdayIndex      = new CachedValue<>();
+    private final  CachedValue<OrganizationIndex>  organizationIndex  = new CachedValue<>();
+    private final  CachedValue<ContactLookupCache> contactLookupCache = new CachedValue<>();
+    private final  CachedValue<Favorites>          favorites          = new CachedValue<>();
+    private volatile ContactDetailCache contactDetailCache;
+    private volatile PhoneticIndex      phoneticIndex;
+
+    private final  AtomicReference<ContactsPrewarm> contactsPrewarm = new AtomicReference<>();
+
+    // Screens that unmount without calling endSearchSession would leak their sessions, so only the most recently
+    // used ones are kept.
+    private final  Map<String, SearchSession> searchSessions = new LinkedHashMap<String, SearchSession>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SearchSession> eldest) {
+            return size() > MAX_SEARCH_SESSIONS;
+        }
+    };
+
 
     public RNUnifiedContactsModule(ReactApplicationContext reactContext) {
+        this( reactContext, false );
+    }
+
+    /**
+     * @param prewarmContacts whether to start loading all contacts in the background right away, when the app can
+     *                        already read them, so the first getContacts call finds them loaded.
+     */
+    public RNUnifiedContactsModule(ReactApplicationContext reactContext, boolean prewarmContacts) {
         super(reactContext);
 
         sharedPreferences = PreferenceManager.getDefaultSharedPreferences( getReactApplicationContext() );
 
+        if ( prewarmContacts && ContextCompat.checkSelfPermission( reactContext, Manifest.permission.READ_CONTACTS ) == PackageManager.PERMISSION_GRANTED ) {
+            ContactsPrewarm prewarm = new ContactsPrewarm( new ContactsProvider( reactContext.getContentResolver() ) );
+            contactsPrewarm.set( prewarm );
+            prewarm.start();
+            observeChangesForCaches(); // Contacts loaded before a change are discarded.
+        }
+
 //        reactContext.addActivityEventListener( mActivityEventListener );
     }
 
@@ -61,6 +147,9 @@ class RNUnifiedContactsModule extends ReactContextBaseJavaModule {
     @Override
     public Map<String, Object> getConstants() {
         final Map<String, Object> constants = new HashMap<>();
+        constants.put("CONTACTS_CHANGED_EVENT", CONTACTS_CHANGED_EVENT);
+        constants.put("EXPORT_PROGRESS_EVENT",  EXPORT_PROGRESS_EVENT);
+        constants.put("IMPORT_PROGRESS_EVENT",  IMPORT_PROGRESS_EVENT);
 //        constants.put(DURATION_SHORT_KEY, Toast.LENGTH_SHORT);
 //        constants.put(DURATION_LONG_KEY, Toast.LENGTH_LONG);
         return constants;
@@ -151,17 +240,478 @@ class RNUnifiedContactsModule extends ReactContextBaseJavaModule {
         AsyncTask.execute(new Runnable() {
             @Override
             public void run() {
-                Context context = getReactApplicationContext();
-                ContentResolver cr = context.getContentResolver();
+                WritableArray contacts = takePrewarmedContacts();
+
+                if ( contacts == null ) {
+                    Context context = getReactApplicationContext();
+                    ContentResolver cr = context.getContentResolver();
+
+                    ContactsProvider contactsProvider = new ContactsProvider(cr);
+                    contacts = contactsProvider.getContacts();
+                }
+
+                callback.invoke(null, contacts);
+            }
+        });
+    }
+
+    // Stops waiting for the contacts the module started loading when it was created, e.g. when the app won't show
+    // them after all. Does nothing when prewarming is off or already used up.
+    //
+    @ReactMethod
+    public void cancelPrewarm() {
+        ContactsPrewarm prewarm = takePrewarm();
+        if ( prewarm != null ) {
+            prewarm.cancel();
+        }
+    }
+
+    @ReactMethod
+    public void getContactsWithFilter(final ReadableMap filter, final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                ContactsProvider contactsProvider = new ContactsProvider(getReactApplicationContext().getContentResolver());
+                WritableArray contacts = contactsProvider.getContacts(ContactsProvider.Filter.fromReadableMap(filter));
+
+                callback.invoke(null, contacts);
+            }
+        });
+    }
+
+    // Loads the contacts, or those whose name contains searchText, for at most timeBudgetMs and returns what was read
+    // so far with a continuation to pass back for the rest. The continuation is null once every contact was read.
+    //
+    @ReactMethod
+    public void getContactsWithin(final ReadableMap options, final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                String searchText   = options.hasKey( "searchText" ) && !options.isNull( "searchText" ) ? options.getString( "searchText" ) : null;
+                String continuation = options.hasKey( "continuation" ) && !options.isNull( "continuation" ) ? options.getString( "continuation" ) : null;
+                long   budgetMillis = options.hasKey( "timeBudgetMs" ) ? (long) options.getDouble( "timeBudgetMs" ) : DEFAULT_TIME_BUDGET_MS;
+
+                ContactsProvider contactsProvider = new ContactsProvider(getReactApplicationContext().getContentResolver());
+                WritableMap page = contactsProvider.getContactsWithin(searchText, continuation, budgetMillis);
+
+                callback.invoke(null, page);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void getContactsByIds(final ReadableArray contactIds, final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                ContactsProvider contactsProvider = new ContactsProvider(getReactApplicationContext().getContentResolver());
+                WritableArray contacts = contactsProvider.getContactsByIds(toStringList(contactIds));
+
+                callback.invoke(null, contacts);
+            }
+        });
+    }
+
+    // Lists every contact with only its name, thumbnail and starred state. Use hydrateContacts for the details of the
+    // contacts that are actually shown.
+    //
+    @ReactMethod
+    public void getContactSummaries(final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                WritableArray summaries = getContactDetailCache().summaries();
+
+                callback.invoke(null, summaries);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void hydrateContacts(final ReadableArray contactIds, final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<String> ids = toStringList(contactIds);
+                ContactDetailCache contactDetailCache = getContactDetailCache();
+
+                callback.invoke(null, contactDetailCache.hydrate(ids));
+
+                // The next rows are likely to be scrolled to next.
+                contactDetailCache.prefetchAfter(ids);
+            }
+        });
+    }
+
+    // The starred contacts, most frequently contacted first. They're cached until contacts change, so calling this on
+    // every app start is cheap.
+    //
+    @ReactMethod
+    public void getFavorites(final int limit, final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                WritableArray favorites = Arguments.createArray();
+                for ( ContactsProvider.Contact contact : getFavoriteContacts( limit ) ) {
+                    favorites.pushMap( contact.toMap() );
+                }
+
+                callback.invoke(null, favorites);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void getContactsByRawIds(final ReadableArray rawContactIds, final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                ContactsProvider contactsProvider = new ContactsProvider(getReactApplicationContext().getContentResolver());
+                WritableArray contacts = contactsProvider.getContactsByRawIds(toStringList(rawContactIds));
+
+                callback.invoke(null, contacts);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void resolveLookupKeys(final ReadableArray lookupKeys, final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                ContactsProvider contactsProvider = new ContactsProvider(getReactApplicationContext().getContentResolver());
+                WritableArray resolved = contactsProvider.resolveLookupKeys(toStringList(lookupKeys));
+
+                callback.invoke(null, resolved);
+            }
+        });
+    }
+
+    // Loads every contact into memory so the synchronous methods below can answer without querying. They never query
+    // themselves: until the contacts are loaded, and again after contacts change, getContactCountSync returns -1 and
+    // the others null, while the contacts are loaded in the background.
+    //
+    @ReactMethod
+    public void loadContactLookupCache(final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                int count = getContactLookupCache().count();
+
+                callback.invoke(null, count);
+            }
+        });
+    }
+
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public int getContactCountSync() {
+        ContactLookupCache cache = peekContactLookupCache();
+        return cache != null ? cache.count() : -1;
+    }
 
-                ContactsProvider contactsProvider = new ContactsProvider(cr);
-                WritableArray contacts = contactsProvider.getContacts();
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public WritableMap getContactByIdSync(String contactId) {
+        ContactLookupCache cache = peekContactLookupCache();
+        return cache != null ? cache.getContactById(contactId) : null;
+    }
+
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public WritableMap getContactByPhoneNumberSync(String phoneNumber) {
+        ContactLookupCache cache = peekContactLookupCache();
+        return cache != null ? cache.getContactByPhoneNumber(phoneNumber) : null;
+    }
+
+    @ReactMethod
+    public void getContactStats(final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                ContactsProvider contactsProvider = new ContactsProvider(getReactApplicationContext().getContentResolver());
+                WritableMap stats = contactsProvider.getContactStats();
+
+                callback.invoke(null, stats);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void getContactFingerprints(final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                ContactsProvider contactsProvider = new ContactsProvider(getReactApplicationContext().getContentResolver());
+                try {
+                    WritableArray fingerprints = contactsProvider.getContactFingerprints();
+
+                    callback.invoke(null, fingerprints);
+                } catch (IOException e) {
+                    callback.invoke(e.getMessage(), null);
+                }
+            }
+        });
+    }
+
+    // Hashes every phone number (in E.164) and email address (in lower case) with the salt using SHA-256, for contact
+    // discovery without uploading the identifiers themselves.
+    //
+    @ReactMethod
+    public void hashContactIdentifiers(final String salt, final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                IdentifierHasher hasher = new IdentifierHasher(getReactApplicationContext().getContentResolver());
+                try {
+                    WritableMap hashes = hasher.hash(salt);
+
+                    callback.invoke(null, hashes);
+                } catch (NoSuchAlgorithmException | ExecutionException e) {
+                    callback.invoke(e.toString(), null);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    callback.invoke(e.toString(), null);
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void getGroups(final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                ContactsProvider contactsProvider = new ContactsProvider(getReactApplicationContext().getContentResolver());
+                WritableArray groups = contactsProvider.getGroups();
+
+                callback.invoke(null, groups);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void contactsInGroup(final String groupIdentifier, final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                ContactsProvider contactsProvider = new ContactsProvider(getReactApplicationContext().getContentResolver());
+                ContactsProvider.Filter filter = new ContactsProvider.Filter(null, null, Collections.singletonList(groupIdentifier));
+                WritableArray contacts = contactsProvider.getContacts(filter);
 
                 callback.invoke(null, contacts);
             }
         });
     }
 
+    // Writes the whole address book to a vCard file, one contact at a time, so memory use doesn't grow with the number
+    // of contacts. Options: path, version ("3.0" or "4.0"), gzip and includePhotos. Emits EXPORT_PROGRESS_EVENT while
+    // writing and calls back with the path and the number of contacts written.
+    //
+    @ReactMethod
+    public void exportVCard(final ReadableMap options, final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean gzip          = options.hasKey( "gzip" ) && options.getBoolean( "gzip" );
+                boolean includePhotos = options.hasKey( "includePhotos" ) && options.getBoolean( "includePhotos" );
+                String  version       = options.hasKey( "version" ) ? options.getString( "version" ) : VCardWriter.VERSION_3;
+                String  path          = options.hasKey( "path" ) ? options.getString( "path" )
+                        : new File( getReactApplicationContext().getCacheDir(), gzip ? "contacts.vcf.gz" : "contacts.vcf" ).getPath();
+
+                final ContactsProvider contactsProvider = new ContactsProvider(getReactApplicationContext().getContentResolver());
+                final int total = contactsProvider.getContactCount();
+
+                Writer writer = null;
+                try {
+                    OutputStream outputStream = new FileOutputStream( path );
+                    if ( gzip ) {
+                        outputStream = new GZIPOutputStream( outputStream, 64 * 1024 );
+                    }
+                    writer = new BufferedWriter( new OutputStreamWriter( outputStream, Charset.forName( "UTF-8" ) ), 64 * 1024 );
+
+                    final VCardWriter vCardWriter = new VCardWriter( writer, version, includePhotos ? contactsProvider : null );
+                    int written = contactsProvider.forEachContact( new ContactsProvider.ContactVisitor() {
+                        private int visited = 0;
+
+                        @Override
+                        public void visit(ContactsProvider.Contact contact) throws IOException {
+                            vCardWriter.write( contact );
+
+                            visited++;
+                            if ( visited % PROGRESS_EVENT_INTERVAL == 0 ) {
+                                emitProgress( EXPORT_PROGRESS_EVENT, visited, total );
+                            }
+                        }
+                    });
+                    writer.close();
+                    writer = null;
+
+                    emitProgress( EXPORT_PROGRESS_EVENT, written, total );
+
+                    WritableMap result = Arguments.createMap();
+                    result.putString( "path", path );
+                    result.putInt( "count", written );
+                    callback.invoke( null, result );
+                }
+                catch ( IOException e ) {
+                    callback.invoke( e.getMessage(), null );
+                }
+                finally {
+                    closeQuietly( writer );
+                }
+            }
+        });
+    }
+
+    // Writes every contact to a binary file that native code, or JS through a file reader, can memory-map and read a
+    // record at a time. The format is documented in BinaryContactWriter and versioned by the returned schemaVersion.
+    //
+    @ReactMethod
+    public void exportBinary(final ReadableMap options, final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                String path = options.hasKey( "path" ) ? options.getString( "path" )
+                        : new File( getReactApplicationContext().getCacheDir(), "contacts.bin" ).getPath();
+
+                final ContactsProvider contactsProvider = new ContactsProvider(getReactApplicationContext().getContentResolver());
+                final int total = contactsProvider.getContactCount();
+
+                BinaryContactWriter binaryWriter = null;
+                try {
+                    binaryWriter = new BinaryContactWriter( path );
+
+                    final BinaryContactWriter writer = binaryWriter;
+                    contactsProvider.forEachContact( new ContactsProvider.ContactVisitor() {
+                        @Override
+                        public void visit(ContactsProvider.Contact contact) throws IOException {
+                            writer.write( contact );
+
+                            if ( writer.getCount() % PROGRESS_EVENT_INTERVAL == 0 ) {
+                                emitProgress( EXPORT_PROGRESS_EVENT, writer.getCount(), total );
+                            }
+                        }
+                    });
+                    writer.finish();
+
+                    emitProgress( EXPORT_PROGRESS_EVENT, writer.getCount(), total );
+
+                    WritableMap result = Arguments.createMap();
+                    result.putString( "path", path );
+                    result.putInt( "schemaVersion", BinaryContactWriter.SCHEMA_VERSION );
+                    result.putInt( "count", writer.getCount() );
+                    callback.invoke( null, result );
+                }
+                catch ( IOException e ) {
+                    callback.invoke( e.getMessage(), null );
+                }
+                finally {
+                    closeQuietly( binaryWriter );
+                }
+            }
+        });
+    }
+
+    // Reads a vCard file, gzipped if its name ends with ".gz", and adds every card as a new contact. Cards that can't
+    // be read or written are reported in the result instead of aborting the import. Needs WRITE_CONTACTS.
+    //
+    @ReactMethod
+    public void importVCard(final ReadableMap options, final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                String path = options.getString( "path" );
+
+                BufferedReader reader = null;
+                try {
+                    InputStream inputStream = new FileInputStream( path );
+                    if ( path.endsWith( ".gz" ) ) {
+                        inputStream = new GZIPInputStream( inputStream, 64 * 1024 );
+                    }
+                    reader = new BufferedReader( new InputStreamReader( inputStream, Charset.forName( "UTF-8" ) ), 64 * 1024 );
+
+                    VCardImporter importer = new VCardImporter( getReactApplicationContext().getContentResolver(), new VCardImporter.ProgressListener() {
+                        @Override
+                        public void onProgress(int cardsRead) {
+                            emitProgress( IMPORT_PROGRESS_EVENT, cardsRead, -1 ); // The number of cards isn't known until the end.
+                        }
+                    });
+                    WritableMap result = importer.importFrom( reader );
+
+                    callback.invoke( null, result );
+                }
+                catch ( IOException e ) {
+                    callback.invoke( e.getMessage(), null );
+                }
+                finally {
+                    closeQuietly( reader );
+                }
+            }
+        });
+    }
+
+    // Writes edits back to contacts unless they were changed since the edits were based on them: every update has
+    // the rawContactVersions read with the contact, and only the fields given are changed. Needs WRITE_CONTACTS.
+    //
+    @ReactMethod
+    public void updateContacts(final ReadableArray updates, final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                ContentResolver cr = getReactApplicationContext().getContentResolver();
+                ContactUpdater updater = new ContactUpdater( cr, new ContactsProvider( cr ) );
+                WritableMap result = updater.update( updates );
+
+                callback.invoke( null, result );
+            }
+        });
+    }
+
+    // Emits CONTACTS_CHANGED_EVENT through RCTDeviceEventEmitter with the IDs of the added, changed and deleted
+    // contacts whenever the address book changes, so lists can be patched instead of reloaded.
+    //
+    @ReactMethod
+    public void startObservingContacts() {
+        if ( contactsChangeObserver != null ) return;
+
+        contactsChangeObserver = ContactsChangeObserver.start( getReactApplicationContext().getContentResolver(), getObserverLooper(), new ContactsChangeObserver.Listener() {
+            @Override
+            public void onContactsChanged(List<String> added, List<String> changed, List<String> deleted) {
+                WritableMap event = Arguments.createMap();
+                event.putArray( "added",   Arguments.fromList( added ) );
+                event.putArray( "changed", Arguments.fromList( changed ) );
+                event.putArray( "deleted", Arguments.fromList( deleted ) );
+
+                getReactApplicationContext()
+                        .getJSModule( DeviceEventManagerModule.RCTDeviceEventEmitter.class )
+                        .emit( CONTACTS_CHANGED_EVENT, event );
+            }
+        });
+    }
+
+    @ReactMethod
+    public void stopObservingContacts() {
+        if ( contactsChangeObserver == null ) return;
+
+        contactsChangeObserver.stop();
+        contactsChangeObserver = null;
+    }
+
+    @Override
+    public void onCatalystInstanceDestroy() {
+        stopObservingContacts();
+        cancelPrewarm();
+
+        synchronized (this) {
+            if ( cacheInvalidationObserver != null ) {
+                getReactApplicationContext().getContentResolver().unregisterContentObserver( cacheInvalidationObserver );
+                cacheInvalidationObserver = null;
+            }
+            if ( observerThread != null ) {
+                observerThread.quit();
+                observerThread = null;
+            }
+        }
+    }
+
     @ReactMethod
     public void searchContacts( String searchText, Callback callback ) {
 
@@ -208,6 +758,154 @@ class RNUnifiedContactsModule extends ReactContextBaseJavaModule {
         callback.invoke(null, contacts);
     }
 
+    // Searches display names like searchContacts, but refines the previous results of the same session in memory when
+    // the search text only grew. Call endSearchSession once the search UI is closed.
+    //
+    @ReactMethod
+    public void searchContactsInSession(final String sessionId, final String searchText, final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                WritableArray contacts = getSearchSession(sessionId).search(searchText);
+
+                callback.invoke(null, contacts);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void endSearchSession(String sessionId) {
+        synchronized (searchSessions) {
+            searchSessions.remove(sessionId);
+        }
+    }
+
+    @ReactMethod
+    public void searchContactsIndexed(final String searchText, final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                ContactsProvider contactsProvider = new ContactsProvider(getReactApplicationContext().getContentResolver());
+                WritableArray contacts = contactsProvider.searchContactsIndexed(searchText);
+
+                callback.invoke(null, contacts);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void searchContactsFuzzy(final String searchText, final int limit, final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                ContactsProvider contactsProvider = new ContactsProvider(getReactApplicationContext().getContentResolver());
+                try {
+                    WritableArray contacts = contactsProvider.searchContactsFuzzy(searchText, limit);
+
+                    callback.invoke(null, contacts);
+                } catch (IOException e) {
+                    callback.invoke(e.getMessage(), null);
+                }
+            }
+        });
+    }
+
+    // Matches dialer keypad digits against names and phone numbers, e.g. "564" finds "John". Call it again with every
+    // digit the user types; each call only has to look at the matches of the previous one.
+    //
+    @ReactMethod
+    public void searchContactsT9(final String digits, final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                WritableArray matches = getT9Index().search(digits);
+
+                callback.invoke(null, matches);
+            }
+        });
+    }
+
+    // Matches names in any script against Latin search text through their transliterations and phonetic names, e.g.
+    // "ivan" finds an Ivan written in Cyrillic.
+    //
+    @ReactMethod
+    public void searchContactsPhonetic(final String searchText, final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<String> contactIds = getPhoneticIndex().search( searchText );
+                if ( contactIds.size() > MAX_PHONETIC_RESULTS ) {
+                    contactIds = contactIds.subList( 0, MAX_PHONETIC_RESULTS );
+                }
+
+                ContactsProvider contactsProvider = new ContactsProvider(getReactApplicationContext().getContentResolver());
+                Map<String, ContactsProvider.Contact> contacts = contactsProvider.loadContactsByIds( contactIds );
+
+                WritableArray result = Arguments.createArray();
+                for ( String contactId : contactIds ) {
+                    ContactsProvider.Contact contact = contacts.get( contactId );
+                    // Skipped if it was deleted since the index was built.
+                    if ( contact != null ) {
+                        result.pushMap( contact.toMap() );
+                    }
+                }
+
+                callback.invoke(null, result);
+            }
+        });
+    }
+
+    // Lists the companies contacts work for, largest first, each with a key, its name, the number of contacts and
+    // the departments. Pass the key to getContactsInOrganization for the contacts themselves.
+    //
+    @ReactMethod
+    public void getOrganizations(final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                WritableArray organizations = getOrganizationIndex().organizations();
+
+                callback.invoke(null, organizations);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void getContactsInOrganization(final String organizationKey, final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<String> contactIds = getOrganizationIndex().contactIds( organizationKey );
+
+                ContactsProvider contactsProvider = new ContactsProvider(getReactApplicationContext().getContentResolver());
+                Map<String, ContactsProvider.Contact> contacts = contactsProvider.loadContactsByIds( contactIds );
+
+                WritableArray result = Arguments.createArray();
+                for ( String contactId : contactIds ) {
+                    ContactsProvider.Contact contact = contacts.get( contactId );
+                    // Skipped if it was deleted since the index was built.
+                    if ( contact != null ) {
+                        result.pushMap( contact.toMap() );
+                    }
+                }
+
+                callback.invoke(null, result);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void getUpcomingBirthdays(final int days, final Callback callback) {
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                WritableArray birthdays = getBirthdayIndex().upcoming( days, Calendar.getInstance() );
+
+                callback.invoke(null, birthdays);
+            }
+        });
+    }
+
 //    @ReactMethod
 //    public void selectContact(Callback callback) {
 //        this.callback = callback;
@@ -298,7 +996,8 @@ class RNUnifiedContactsModule extends ReactContextBaseJavaModule {
         WritableMap birthday = getBirthdayFromContact(contactId);
         contactMap.putMap( "birthday", birthday );
 
-        // TODO: Instant Messenger entries.
+        WritableArray instantMessageAddresses = getInstantMessageAddressesFromContact(contactId);
+        contactMap.putArray( "instantMessageAddresses", instantMessageAddresses );
 
         String note = getNoteFromContact(contactId);
         contactMap.putString( "note", note );
@@ -602,6 +1301,39 @@ class RNUnifiedContactsModule extends ReactContextBaseJavaModule {
         return birthday;
     }
 
+    // Decoded like the rows of every other lookup, so labels and services are the same.
+    private WritableArray getInstantMessageAddressesFromContact(int contactId) {
+        WritableArray instantMessageAddresses = Arguments.createArray();
+
+        String   whereString = ContactsContract.Data.CONTACT_ID + " = ? AND " + ContactsContract.Data.MIMETYPE + " = ?";
+        String[] whereParams = new String[]{String.valueOf(contactId), ContactsContract.CommonDataKinds.Im.CONTENT_ITEM_TYPE };
+
+        Cursor instantMessageAddressesCursor = contentResolver.query(
+                ContactsContract.Data.CONTENT_URI,
+                null,
+                whereString,
+                whereParams,
+                null);
+
+        ContactsProvider.Contact contact = new ContactsProvider.Contact( String.valueOf(contactId) );
+        DataRowDecoders.Decoder decoder = DataRowDecoders.get( ContactsContract.CommonDataKinds.Im.CONTENT_ITEM_TYPE );
+        while (instantMessageAddressesCursor.moveToNext()) {
+            decoder.decode( instantMessageAddressesCursor, getStringFromCursor( instantMessageAddressesCursor, ContactsContract.Data._ID ), contact );
+        }
+        instantMessageAddressesCursor.close();
+
+        for ( ContactsProvider.Contact.InstantMessageItem item : contact.instantMessageAddresses ) {
+            WritableMap instantMessageAddress = Arguments.createMap();
+            instantMessageAddress.putString( "label", item.label );
+            instantMessageAddress.putString( "service", item.service );
+            instantMessageAddress.putString( "username", item.username );
+            instantMessageAddress.putString( "id", item.id );
+            instantMessageAddresses.pushMap( instantMessageAddress );
+        }
+
+        return instantMessageAddresses;
+    }
+
     private String getNoteFromContact(int contactId) {
         String   whereString = ContactsContract.Data.CONTACT_ID + " = ? AND " + ContactsContract.Data.MIMETYPE + " = ?";
         String[] whereParams = new String[]{String.valueOf(contactId), ContactsContract.CommonDataKinds.Note.CONTENT_ITEM_TYPE };
@@ -623,6 +1355,230 @@ class RNUnifiedContactsModule extends ReactContextBaseJavaModule {
         return note;
     }
 
+    private void emitProgress(String eventName, int done, int total) {
+        WritableMap event = Arguments.createMap();
+        event.putInt( "done", done );
+        if ( total >= 0 ) {
+            event.putInt( "total", Math.max( done, total ) );
+        }
+
+        getReactApplicationContext()
+                .getJSModule( DeviceEventManagerModule.RCTDeviceEventEmitter.class )
+                .emit( eventName, event );
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if ( closeable == null ) return;
+
+        try {
+            closeable.close();
+        } catch ( IOException e ) {
+            // Nothing left to do, the error that got us here has been reported already.
+        }
+    }
+
+    private T9Index getT9Index() {
+        T9Index index = t9Index.peek();
+        if ( index == null ) {
+            observeChangesForCaches();
+            int generation = t9Index.generation();
+            index = T9Index.build( getReactApplicationContext().getContentResolver() );
+            t9Index.publish( index, generation );
+        }
+        return index;
+    }
+
+    private ContactsPrewarm takePrewarm() {
+        return contactsPrewarm.getAndSet( null );
+    }
+
+    // The contacts loaded in the background since the module was created, waiting for them if they're still loading.
+    // Null if there are none, so the caller has to load them.
+    //
+    private WritableArray takePrewarmedContacts() {
+        ContactsPrewarm prewarm = takePrewarm();
+        return prewarm != null ? prewarm.await() : null;
+    }
+
+    private SearchSession getSearchSession(String sessionId) {
+        observeChangesForCaches();
+
+        synchronized (searchSessions) {
+            SearchSession searchSession = searchSessions.get(sessionId);
+            if (searchSession == null) {
+                searchSession = new SearchSession( new ContactsProvider( getReactApplicationContext().getContentResolver() ) );
+                searchSessions.put(sessionId, searchSession);
+            }
+            return searchSession;
+        }
+    }
+
+    private List<ContactsProvider.Contact> getFavoriteContacts(int limit) {
+        // A negative limit from JS means none rather than an exception.
+        limit = Math.max( 0, limit );
+
+        Favorites cached = favorites.peek();
+        // Fewer favorites than the cached limit means there are no more to load.
+        if ( cached == null || ( limit > cached.limit && cached.contacts.size() == cached.limit ) ) {
+            observeChangesForCaches();
+            int generation = favorites.generation();
+            cached = new Favorites( new ContactsProvider( getReactApplicationContext().getContentResolver() ).loadFavorites( limit ), limit );
+            favorites.publish( cached, generation );
+        }
+        return cached.contacts.subList( 0, Math.min( limit, cached.contacts.size() ) );
+    }
+
+    private PhoneticIndex getPhoneticIndex() {
+        PhoneticIndex index = phoneticIndex;
+        if ( index == null ) {
+            // The index reads the names on its first search, so creating it is cheap enough to do under the lock.
+            synchronized (this) {
+                if ( phoneticIndex == null ) {
+                    phoneticIndex = new PhoneticIndex( getReactApplicationContext().getContentResolver() );
+                }
+                index = phoneticIndex;
+            }
+            observeChangesForCaches();
+        }
+        return index;
+    }
+
+    private ContactLookupCache getContactLookupCache() {
+        ContactLookupCache cache = contactLookupCache.peek();
+        if ( cache == null ) {
+            observeChangesForCaches();
+            int generation = contactLookupCache.generation();
+            cache = ContactLookupCache.build( new ContactsProvider( getReactApplicationContext().getContentResolver() ) );
+            contactLookupCache.publish( cache, generation );
+        }
+        return cache;
+    }
+
+    // The lookup cache if it's loaded. Otherwise starts loading it in the background and returns null, so the
+    // synchronous methods never load the address book on the JS thread.
+    //
+    private ContactLookupCache peekContactLookupCache() {
+        ContactLookupCache cache = contactLookupCache.peek();
+        if ( cache == null ) {
+            AsyncTask.execute(new Runnable() {
+                @Override
+                public void run() {
+                    getContactLookupCache();
+                }
+            });
+        }
+        return cache;
+    }
+
+    private ContactDetailCache getContactDetailCache() {
+        ContactDetailCache cache = contactDetailCache;
+        if ( cache == null ) {
+            synchronized (this) {
+                if ( contactDetailCache == null ) {
+                    contactDetailCache = new ContactDetailCache( new ContactsProvider( getReactApplicationContext().getContentResolver() ) );
+                }
+                cache = contactDetailCache;
+            }
+            observeChangesForCaches();
+        }
+        return cache;
+    }
+
+    private OrganizationIndex getOrganizationIndex() {
+        OrganizationIndex index = organizationIndex.peek();
+        if ( index == null ) {
+            observeChangesForCaches();
+            int generation = organizationIndex.generation();
+            index = OrganizationIndex.build( getReactApplicationContext().getContentResolver() );
+            organizationIndex.publish( index, generation );
+        }
+        return index;
+    }
+
+    private BirthdayIndex getBirthdayIndex() {
+        BirthdayIndex index = birthdayIndex.peek();
+        if ( index == null ) {
+            observeChangesForCaches();
+            int generation = birthdayIndex.generation();
+            index = BirthdayIndex.build( getReactApplicationContext().getContentResolver() );
+            birthdayIndex.publish( index, generation );
+        }
+        return index;
+    }
+
+    // Takes no lock the getters above hold while loading, so it returns right away even while an index is built.
+    //
+    private void invalidateCaches() {
+        t9Index.invalidate();
+        birthdayIndex.invalidate();
+        organizationIndex.invalidate();
+        contactLookupCache.invalidate();
+        favorites.invalidate();
+
+        PhoneticIndex phonetic = phoneticIndex;
+        if ( phonetic != null ) {
+            // Only marked stale, so the transliterations of unchanged contacts are kept.
+            phonetic.invalidate();
+        }
+        ContactsPrewarm prewarm = takePrewarm();
+        if ( prewarm != null ) {
+            prewarm.cancel();
+        }
+        ContactDetailCache detailCache = contactDetailCache;
+        if ( detailCache != null ) {
+            detailCache.clear();
+        }
+        synchronized (searchSessions) {
+            // Dropped rather than refined, so they can't return deleted contacts.
+            searchSessions.clear();
+        }
+    }
+
+    private synchronized void observeChangesForCaches() {
+        if ( cacheInvalidationObserver != null ) return;
+
+        cacheInvalidationObserver = new ContentObserver( new Handler( getObserverLooper() ) ) {
+            @Override
+            public void onChange(boolean selfChange) {
+                invalidateCaches();
+            }
+        };
+        getReactApplicationContext().getContentResolver().registerContentObserver( ContactsContract.Contacts.CONTENT_URI, true, cacheInvalidationObserver );
+    }
+
+    // The background thread shared by the cache observer and the observer of startObservingContacts.
+    //
+    private synchronized Looper getObserverLooper() {
+        if ( observerThread == null ) {
+            observerThread = new HandlerThread( "RNUnifiedContactsObserver", Process.THREAD_PRIORITY_BACKGROUND );
+            observerThread.start();
+        }
+        return observerThread.getLooper();
+    }
+
+    private static class Favorites {
+        private final List<ContactsProvider.Contact> contacts;
+        private final int                            limit;
+
+        Favorites(List<ContactsProvider.Contact> contacts, int limit) {
+            this.contacts = contacts;
+            this.limit = limit;
+        }
+    }
+
+    private List<String> toStringList(ReadableArray array) {
+        List<String> strings = new ArrayList<>();
+        for (int i = 0; i < array.size(); i++) {
+            // IDs may come from JS as numbers or strings.
+            if (array.getType(i) == ReadableType.Number) {
+                strings.add(String.valueOf((long) array.getDouble(i)));
+            } else {
+                strings.add(array.getString(i));
+            }
+        }
+        return strings;
+    }
+
     private String getStringFromCursor(Cursor cursor, String column) {
         int columnIndex = cursor.getColumnIndex(column);
         return cursor.getString(columnIndex);
@@ -13,11 +13,25 @@ import java.util.List;
 
 public class RNUnifiedContactsPackage implements ReactPackage {
 
+    private final boolean prewarmContacts;
+
+    public RNUnifiedContactsPackage() {
+        this( false );
+    }
+
+    /**
+     * @param prewarmContacts whether to start loading all contacts in the background as soon as the module is
+     *                        created, if READ_CONTACTS is already granted, so the first getContacts call is faster.
+     */
+    public RNUnifiedContactsPackage( boolean prewarmContacts ) {
+        this.prewarmContacts = prewarmContacts;
+    }
+
     @Override
     public List<NativeModule> createNativeModules(ReactApplicationContext reactContext) {
         List<NativeModule> modules = new ArrayList<>();
 
-        modules.add( new RNUnifiedContactsModule(reactContext) );
+        modules.add( new RNUnifiedContactsModule(reactContext, prewarmContacts) );
 
         return modules;
     }
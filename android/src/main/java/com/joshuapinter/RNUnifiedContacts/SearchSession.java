@@ -0,0 +1,90 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Search-as-you-type over display names, like getContactsMatchingString, that refines its previous results instead
+ * of querying the provider again.
+ *
+ * A name containing the new search text also contains the previous one whenever the new text contains the previous
+ * text, e.g. after typing another letter. Those searches filter the previous results in memory and then read only
+ * the remaining contacts by ID. Any other change, like a backspace, queries the provider.
+ *
+ * Only the ID and folded display name of every result are kept between searches, not the decoded contacts.
+ */
+class SearchSession {
+
+    private final ContactsProvider contactsProvider;
+
+    private String              lastSearchText;
+    // Folded display names by contact ID, in the order of the results.
+    private Map<String, String> lastResults;
+
+    SearchSession(ContactsProvider contactsProvider) {
+        this.contactsProvider = contactsProvider;
+    }
+
+    synchronized WritableArray search(String searchText) {
+        String folded = fold(searchText == null ? "" : searchText);
+
+        // LIKE treats % and _ as wildcards, which contains() can't.
+        boolean hasWildcards = folded.indexOf('%') != -1 || folded.indexOf('_') != -1;
+
+        List<ContactsProvider.Contact> contacts = new ArrayList<>();
+        Map<String, String> results = new LinkedHashMap<>();
+        if (lastResults != null && !hasWildcards && folded.contains(lastSearchText)) {
+            for (Map.Entry<String, String> result : lastResults.entrySet()) {
+                if (result.getValue().contains(folded)) {
+                    results.put(result.getKey(), result.getValue());
+                }
+            }
+            Map<String, ContactsProvider.Contact> matchingContacts = contactsProvider.loadContactsByIds(new ArrayList<>(results.keySet()));
+            for (String contactId : results.keySet()) {
+                ContactsProvider.Contact contact = matchingContacts.get(contactId);
+                // Skipped if it was deleted since the previous search.
+                if (contact != null) {
+                    contacts.add(contact);
+                }
+            }
+        } else {
+            for (ContactsProvider.Contact contact : contactsProvider.loadContactsMatchingString(folded, null).values()) {
+                contacts.add(contact);
+                if (contact.displayName != null) {
+                    results.put(contact.contactId, fold(contact.displayName));
+                }
+            }
+        }
+
+        lastSearchText = folded;
+        lastResults = results;
+
+        WritableArray result = Arguments.createArray();
+        for (ContactsProvider.Contact contact : contacts) {
+            result.pushMap(contact.toMap());
+        }
+        return result;
+    }
+
+    /**
+     * Lower-cases ASCII letters only, matching how SQLite's LIKE compares text.
+     */
+    private static String fold(String text) {
+        StringBuilder folded = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                if (folded == null) {
+                    folded = new StringBuilder(text);
+                }
+                folded.setCharAt(i, (char) (c + ('a' - 'A')));
+            }
+        }
+        return folded != null ? folded.toString() : text;
+    }
+}
@@ -0,0 +1,280 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.provider.ContactsContract;
+import android.text.TextUtils;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static android.provider.ContactsContract.CommonDataKinds.Phone;
+import static android.provider.ContactsContract.CommonDataKinds.StructuredName;
+
+/**
+ * Matches dialer keypad digits against contact names ("564" matches "John") and phone numbers.
+ *
+ * Every name word is translated to keypad digits once, when the index is built. While the user keeps typing
+ * digits, each search only looks at the contacts that matched the previous, shorter digits.
+ */
+class T9Index {
+
+    private static final String KEYPAD = "22233344455566677778889999";
+
+    private static final String[] PROJECTION = new String[]{
+            ContactsContract.Data.CONTACT_ID,
+            ContactsContract.Data.MIMETYPE,
+            ContactsContract.Contacts.DISPLAY_NAME,
+            StructuredName.GIVEN_NAME,
+            StructuredName.MIDDLE_NAME,
+            StructuredName.FAMILY_NAME,
+            Phone.NUMBER
+    };
+
+    private final List<Entry> entries;
+
+    private String      lastDigits;
+    private List<Entry> lastMatches;
+
+    private T9Index(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    static T9Index build(ContentResolver contentResolver) {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+
+        Cursor cursor = contentResolver.query(
+                ContactsContract.Data.CONTENT_URI,
+                PROJECTION,
+                ContactsContract.Data.MIMETYPE + " IN (?,?)",
+                new String[]{StructuredName.CONTENT_ITEM_TYPE, Phone.CONTENT_ITEM_TYPE},
+                ContactsContract.Contacts.DISPLAY_NAME
+        );
+
+        try {
+            while (cursor != null && cursor.moveToNext()) {
+                String contactId = cursor.getString(0);
+                Entry entry = entries.get(contactId);
+                if (entry == null) {
+                    entry = new Entry(contactId, cursor.getString(2));
+                    entries.put(contactId, entry);
+                }
+
+                if (StructuredName.CONTENT_ITEM_TYPE.equals(cursor.getString(1))) {
+                    for (int column = 3; column <= 5; column++) {
+                        entry.addNamePart(cursor.getString(column));
+                    }
+                } else {
+                    entry.addNumber(cursor.getString(6));
+                }
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return new T9Index(new ArrayList<>(entries.values()));
+    }
+
+    /**
+     * Returns the contacts matching the digits, name matches first, with the offsets of the matched characters in
+     * the matched text so they can be highlighted.
+     */
+    synchronized WritableArray search(String digits) {
+        WritableArray result = Arguments.createArray();
+        if (TextUtils.isEmpty(digits)) {
+            // No digits match nothing, so the next search has to start from all contacts again.
+            lastDigits = null;
+            lastMatches = null;
+            return result;
+        }
+
+        List<Entry> candidates = lastDigits != null && digits.startsWith(lastDigits) ? lastMatches : entries;
+
+        List<Entry> matches = new ArrayList<>();
+        List<Match> nameMatches = new ArrayList<>();
+        List<Match> numberMatches = new ArrayList<>();
+        for (Entry entry : candidates) {
+            Match match = entry.matchName(digits);
+            if (match != null) {
+                nameMatches.add(match);
+            } else {
+                match = entry.matchNumber(digits);
+                if (match == null) {
+                    continue;
+                }
+                numberMatches.add(match);
+            }
+            matches.add(entry);
+        }
+
+        lastDigits = digits;
+        lastMatches = matches;
+
+        for (Match match : nameMatches) {
+            result.pushMap(match.toMap());
+        }
+        for (Match match : numberMatches) {
+            result.pushMap(match.toMap());
+        }
+        return result;
+    }
+
+    static String toKeypadDigits(String text) {
+        String stripped = Normalizer.normalize(text.toLowerCase(Locale.getDefault()), Normalizer.Form.NFD);
+        StringBuilder digits = new StringBuilder(text.length());
+        for (int i = 0; i < stripped.length(); i++) {
+            char c = stripped.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (c >= 'a' && c <= 'z') {
+                digits.append(KEYPAD.charAt(c - 'a'));
+            } else if (c >= '0' && c <= '9') {
+                digits.append(c);
+            } else {
+                // Keeps the digits aligned with the characters of the text, but never matches a key.
+                digits.append(' ');
+            }
+        }
+        return digits.length() == text.length() ? digits.toString() : null;
+    }
+
+    private static class Entry {
+        private final String contactId;
+        private final String displayName;
+        private final List<Word> words = new ArrayList<>();
+        private final List<String> numbers = new ArrayList<>();
+
+        Entry(String contactId, String displayName) {
+            this.contactId = contactId;
+            this.displayName = displayName == null ? "" : displayName;
+            addWords(this.displayName);
+        }
+
+        void addNamePart(String namePart) {
+            if (TextUtils.isEmpty(namePart)) {
+                return;
+            }
+            for (Word word : words) {
+                if (word.text == displayName && displayName.regionMatches(true, word.start, namePart, 0, namePart.length())) {
+                    return;
+                }
+            }
+            addWords(namePart);
+        }
+
+        void addNumber(String number) {
+            if (TextUtils.isEmpty(number)) {
+                return;
+            }
+            numbers.add(number);
+        }
+
+        private void addWords(String text) {
+            String keys = toKeypadDigits(text);
+            if (keys == null) {
+                // Decomposition changed the length of the text, so word offsets can't be mapped back.
+                keys = toKeypadDigits(text.replaceAll("[^\\p{ASCII}]", " "));
+            }
+            if (keys == null) {
+                // No keys to match, so the text is left out rather than failing the whole index.
+                return;
+            }
+            int start = -1;
+            for (int i = 0; i <= text.length(); i++) {
+                boolean letterOrDigit = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+                if (letterOrDigit && start == -1) {
+                    start = i;
+                } else if (!letterOrDigit && start != -1) {
+                    words.add(new Word(text, start, keys.substring(start, i)));
+                    start = -1;
+                }
+            }
+        }
+
+        Match matchName(String digits) {
+            for (Word word : words) {
+                if (word.keys.startsWith(digits)) {
+                    return new Match(this, "name", word.text, word.start, word.start + digits.length());
+                }
+            }
+            return null;
+        }
+
+        Match matchNumber(String digits) {
+            for (String number : numbers) {
+                // Skip the formatting characters of the number while matching, e.g. "5551" matches "(555) 123".
+                for (int start = 0; start < number.length(); start++) {
+                    if (number.charAt(start) != digits.charAt(0)) {
+                        continue;
+                    }
+                    int matched = 0;
+                    int end = start;
+                    while (end < number.length() && matched < digits.length()) {
+                        char c = number.charAt(end);
+                        if (Character.isDigit(c)) {
+                            if (c != digits.charAt(matched)) {
+                                break;
+                            }
+                            matched++;
+                        }
+                        end++;
+                    }
+                    if (matched == digits.length()) {
+                        return new Match(this, "phoneNumber", number, start, end);
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    private static class Word {
+        private final String text;
+        private final int start;
+        private final String keys;
+
+        Word(String text, int start, String keys) {
+            this.text = text;
+            this.start = start;
+            this.keys = keys;
+        }
+    }
+
+    private static class Match {
+        private final Entry entry;
+        private final String field;
+        private final String text;
+        private final int start;
+        private final int end;
+
+        Match(Entry entry, String field, String text, int start, int end) {
+            this.entry = entry;
+            this.field = field;
+            this.text = text;
+            this.start = start;
+            this.end = end;
+        }
+
+        WritableMap toMap() {
+            WritableMap map = Arguments.createMap();
+            map.putString("recordID", entry.contactId);
+            map.putString("displayName", entry.displayName);
+            map.putString("matchedField", field);
+            map.putString("matchedText", text);
+            map.putInt("matchStart", start);
+            map.putInt("matchEnd", end);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.OperationApplicationException;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.provider.ContactsContract;
+import android.util.Base64;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static android.provider.ContactsContract.CommonDataKinds.Email;
+import static android.provider.ContactsContract.CommonDataKinds.Event;
+import static android.provider.ContactsContract.CommonDataKinds.Note;
+import static android.provider.ContactsContract.CommonDataKinds.Organization;
+import static android.provider.ContactsContract.CommonDataKinds.Phone;
+import static android.provider.ContactsContract.CommonDataKinds.Photo;
+import static android.provider.ContactsContract.CommonDataKinds.StructuredName;
+import static android.provider.ContactsContract.CommonDataKinds.StructuredPostal;
+
+/**
+ * Imports vCards into the contacts provider as new raw contacts, streaming the file and writing in batches.
+ *
+ * Cards are collected until a batch has MAX_OPERATIONS_PER_BATCH operations and then applied in one transaction, so
+ * an import only blocks other apps' contact writes for one batch at a time. Batches have no yield points, which would
+ * let the provider commit part of a batch: a failed batch writes nothing, and its cards can be applied one by one so
+ * a single bad card only fails itself without importing the others twice.
+ */
+class VCardImporter {
+
+    interface ProgressListener {
+        void onProgress(int cardsRead);
+    }
+
+    private static final int MAX_OPERATIONS_PER_BATCH = 400;
+
+    private final ContentResolver  contentResolver;
+    private final ProgressListener progressListener;
+
+    private final List<VCardReader.Card> batch = new ArrayList<>();
+    private final List<Integer>          batchCardNumbers = new ArrayList<>();
+    private       int                    batchOperationCount = 0;
+
+    private int           imported = 0;
+    private WritableArray errors = Arguments.createArray();
+
+    VCardImporter(ContentResolver contentResolver, ProgressListener progressListener) {
+        this.contentResolver = contentResolver;
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Imports every card of the reader and returns the number of imported cards, the errors of the cards that failed
+     * and the throughput in cards per second.
+     */
+    WritableMap importFrom(BufferedReader bufferedReader) throws IOException {
+        long startedAt = SystemClock.elapsedRealtime();
+        VCardReader reader = new VCardReader(bufferedReader);
+
+        int cardNumber = 0;
+        while (true) {
+            VCardReader.Card card;
+            try {
+                card = reader.readCard();
+            } catch (VCardReader.VCardException e) {
+                addError(++cardNumber, e.getMessage());
+                continue;
+            }
+            if (card == null) {
+                break;
+            }
+            cardNumber++;
+
+            int operationCount = countOperations(card);
+            if (batchOperationCount + operationCount > MAX_OPERATIONS_PER_BATCH) {
+                applyBatch();
+            }
+            batch.add(card);
+            batchCardNumbers.add(cardNumber);
+            batchOperationCount += operationCount;
+
+            if (cardNumber % 100 == 0) {
+                progressListener.onProgress(cardNumber);
+            }
+        }
+        applyBatch();
+        progressListener.onProgress(cardNumber);
+
+        long elapsed = Math.max(1, SystemClock.elapsedRealtime() - startedAt);
+
+        WritableMap result = Arguments.createMap();
+        result.putInt("imported", imported);
+        result.putInt("failed", errors.size());
+        result.putArray("errors", errors);
+        result.putDouble("elapsedMs", elapsed);
+        result.putDouble("cardsPerSecond", cardNumber * 1000.0 / elapsed);
+        return result;
+    }
+
+    private void applyBatch() {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        for (VCardReader.Card card : batch) {
+            operations.addAll(buildOperations(card, operations.size()));
+        }
+
+        try {
+            contentResolver.applyBatch(ContactsContract.AUTHORITY, operations);
+            imported += batch.size();
+        } catch (RemoteException | OperationApplicationException | RuntimeException batchError) {
+            // Nothing of the batch was written. Find out which cards were to blame.
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    contentResolver.applyBatch(ContactsContract.AUTHORITY, buildOperations(batch.get(i), 0));
+                    imported++;
+                } catch (RemoteException | OperationApplicationException | RuntimeException e) {
+                    addError(batchCardNumbers.get(i), e.toString());
+                }
+            }
+        }
+
+        batch.clear();
+        batchCardNumbers.clear();
+        batchOperationCount = 0;
+    }
+
+    private void addError(int cardNumber, String message) {
+        WritableMap error = Arguments.createMap();
+        error.putInt("card", cardNumber);
+        error.putString("message", message);
+        errors.pushMap(error);
+    }
+
+    /**
+     * An upper bound of the number of operations buildOperations creates for the card, without building them.
+     */
+    private static int countOperations(VCardReader.Card card) {
+        int count = 1;
+        for (VCardReader.Property property : card.properties) {
+            switch (property.name) {
+                case "N":
+                case "FN":
+                case "TITLE":
+                case "TEL":
+                case "EMAIL":
+                case "ORG":
+                case "ADR":
+                case "BDAY":
+                case "NOTE":
+                case "PHOTO":
+                    count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Builds the operations inserting a card as a raw contact with its Data rows. rawContactIndex is the index the
+     * raw contact insert will have in the batch, which the Data rows refer back to.
+     */
+    private static ArrayList<ContentProviderOperation> buildOperations(VCardReader.Card card, int rawContactIndex) {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+
+        operations.add(ContentProviderOperation.newInsert(ContactsContract.RawContacts.CONTENT_URI)
+                .withValue(ContactsContract.RawContacts.ACCOUNT_TYPE, null)
+                .withValue(ContactsContract.RawContacts.ACCOUNT_NAME, null)
+                .build());
+
+        VCardReader.Property name = card.first("N");
+        VCardReader.Property formattedName = card.first("FN");
+        if (name != null || formattedName != null) {
+            ContentProviderOperation.Builder builder = newDataInsert(rawContactIndex, StructuredName.CONTENT_ITEM_TYPE);
+            if (formattedName != null) {
+                builder.withValue(StructuredName.DISPLAY_NAME, formattedName.value());
+            }
+            if (name != null) {
+                builder.withValue(StructuredName.FAMILY_NAME, name.component(0))
+                        .withValue(StructuredName.GIVEN_NAME, name.component(1))
+                        .withValue(StructuredName.MIDDLE_NAME, name.component(2))
+                        .withValue(StructuredName.PREFIX, name.component(3))
+                        .withValue(StructuredName.SUFFIX, name.component(4));
+            }
+            operations.add(builder.build());
+        }
+
+        for (VCardReader.Property phone : card.all("TEL")) {
+            int type = phone.hasType("CELL") ? Phone.TYPE_MOBILE
+                    : phone.hasType("HOME") ? Phone.TYPE_HOME
+                    : phone.hasType("WORK") ? Phone.TYPE_WORK
+                    : Phone.TYPE_OTHER;
+            operations.add(newDataInsert(rawContactIndex, Phone.CONTENT_ITEM_TYPE)
+                    .withValue(Phone.NUMBER, phone.value().replaceFirst("^tel:", ""))
+                    .withValue(Phone.TYPE, type)
+                    .build());
+        }
+
+        for (VCardReader.Property email : card.all("EMAIL")) {
+            int type = email.hasType("HOME") ? Email.TYPE_HOME
+                    : email.hasType("WORK") ? Email.TYPE_WORK
+                    : Email.TYPE_OTHER;
+            operations.add(newDataInsert(rawContactIndex, Email.CONTENT_ITEM_TYPE)
+                    .withValue(Email.ADDRESS, email.value())
+                    .withValue(Email.TYPE, type)
+                    .build());
+        }
+
+        VCardReader.Property organization = card.first("ORG");
+        VCardReader.Property title = card.first("TITLE");
+        if (organization != null || title != null) {
+            ContentProviderOperation.Builder builder = newDataInsert(rawContactIndex, Organization.CONTENT_ITEM_TYPE);
+            if (organization != null) {
+                builder.withValue(Organization.COMPANY, organization.component(0))
+                        .withValue(Organization.DEPARTMENT, organization.component(1));
+            }
+            if (title != null) {
+                builder.withValue(Organization.TITLE, title.value());
+            }
+            operations.add(builder.build());
+        }
+
+        for (VCardReader.Property address : card.all("ADR")) {
+            int type = address.hasType("HOME") ? StructuredPostal.TYPE_HOME
+                    : address.hasType("WORK") ? StructuredPostal.TYPE_WORK
+                    : StructuredPostal.TYPE_OTHER;
+            operations.add(newDataInsert(rawContactIndex, StructuredPostal.CONTENT_ITEM_TYPE)
+                    .withValue(StructuredPostal.POBOX, address.component(0))
+                    .withValue(StructuredPostal.STREET, address.component(2))
+                    .withValue(StructuredPostal.CITY, address.component(3))
+                    .withValue(StructuredPostal.REGION, address.component(4))
+                    .withValue(StructuredPostal.POSTCODE, address.component(5))
+                    .withValue(StructuredPostal.COUNTRY, address.component(6))
+                    .withValue(StructuredPostal.TYPE, type)
+                    .build());
+        }
+
+        VCardReader.Property birthday = card.first("BDAY");
+        if (birthday != null) {
+            String startDate = toStartDate(birthday.value());
+            if (startDate != null) {
+                operations.add(newDataInsert(rawContactIndex, Event.CONTENT_ITEM_TYPE)
+                        .withValue(Event.START_DATE, startDate)
+                        .withValue(Event.TYPE, Event.TYPE_BIRTHDAY)
+                        .build());
+            }
+        }
+
+        VCardReader.Property note = card.first("NOTE");
+        if (note != null) {
+            operations.add(newDataInsert(rawContactIndex, Note.CONTENT_ITEM_TYPE)
+                    .withValue(Note.NOTE, note.value())
+                    .build());
+        }
+
+        VCardReader.Property photo = card.first("PHOTO");
+        if (photo != null) {
+            byte[] data = decodePhoto(photo.rawValue);
+            if (data != null) {
+                operations.add(newDataInsert(rawContactIndex, Photo.CONTENT_ITEM_TYPE)
+                        .withValue(Photo.PHOTO, data)
+                        .build());
+            }
+        }
+
+        return operations;
+    }
+
+    private static ContentProviderOperation.Builder newDataInsert(int rawContactIndex, String mimeType) {
+        return ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
+                .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, rawContactIndex)
+                .withValue(ContactsContract.Data.MIMETYPE, mimeType);
+    }
+
+    /**
+     * Converts the vCard birthday forms "1986-12-31", "19861231", "--12-31" and "--1231" to the "1986-12-31" and
+     * "--12-31" forms the contacts provider uses.
+     */
+    static String toStartDate(String birthday) {
+        String date = birthday.trim();
+        int timeSeparator = date.indexOf('T');
+        if (timeSeparator != -1) {
+            date = date.substring(0, timeSeparator);
+        }
+
+        boolean hasYear = !date.startsWith("--");
+        String digits = date.replace("-", "");
+        // Plain Java rather than TextUtils, so it runs in JVM unit tests.
+        if (!digits.matches("[0-9]+") || digits.length() != (hasYear ? 8 : 4)) {
+            return null;
+        }
+
+        String monthDay = digits.substring(digits.length() - 4, digits.length() - 2) + "-" + digits.substring(digits.length() - 2);
+        return hasYear ? digits.substring(0, 4) + "-" + monthDay : "--" + monthDay;
+    }
+
+    private static byte[] decodePhoto(String value) {
+        if (value.startsWith("data:")) {
+            int comma = value.indexOf(',');
+            if (comma == -1) {
+                return null;
+            }
+            value = value.substring(comma + 1);
+        } else if (value.startsWith("http:") || value.startsWith("https:")) {
+            // Photos linked by URL aren't downloaded.
+            return null;
+        }
+
+        try {
+            return Base64.decode(value, Base64.DEFAULT);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads vCards from a stream one card at a time, so files of any size can be imported without holding them in memory.
+ *
+ * Handles folded lines, property groups ("item1.TEL"), parameters in the 2.1 ("TEL;CELL") and 3.0/4.0
+ * ("TEL;TYPE=CELL,VOICE") styles and escaped values. Quoted-printable values of vCard 2.1 aren't decoded.
+ */
+class VCardReader {
+
+    static class Property {
+        final String       name;
+        final List<String> types;
+        final String       rawValue;
+
+        Property(String name, List<String> types, String rawValue) {
+            this.name = name;
+            this.types = types;
+            this.rawValue = rawValue;
+        }
+
+        String value() {
+            return unescape(rawValue);
+        }
+
+        /**
+         * Splits a structured value like N or ADR into its components.
+         */
+        List<String> components() {
+            List<String> components = new ArrayList<>();
+            StringBuilder component = new StringBuilder();
+            for (int i = 0; i < rawValue.length(); i++) {
+                char c = rawValue.charAt(i);
+                if (c == '\\' && i + 1 < rawValue.length()) {
+                    component.append(c).append(rawValue.charAt(++i));
+                } else if (c == ';') {
+                    components.add(unescape(component.toString()));
+                    component.setLength(0);
+                } else {
+                    component.append(c);
+                }
+            }
+            components.add(unescape(component.toString()));
+            return components;
+        }
+
+        String component(int index) {
+            List<String> components = components();
+            return index < components.size() ? components.get(index) : "";
+        }
+
+        boolean hasType(String type) {
+            return types.contains(type);
+        }
+    }
+
+    static class Card {
+        final List<Property> properties = new ArrayList<>();
+
+        Property first(String name) {
+            for (Property property : properties) {
+                if (property.name.equals(name)) {
+                    return property;
+                }
+            }
+            return null;
+        }
+
+        List<Property> all(String name) {
+            List<Property> all = new ArrayList<>();
+            for (Property property : properties) {
+                if (property.name.equals(name)) {
+                    all.add(property);
+                }
+            }
+            return all;
+        }
+    }
+
+    private final BufferedReader reader;
+    private       String         nextLine;
+    // A logical line handed back to be read again, which nextLine can't hold as it is already the line after it.
+    private       String         pushedBackLine;
+
+    VCardReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Returns the next card, or null at the end of the stream. Throws VCardException for a card that can't be read,
+     * after which reading continues with the card after it.
+     */
+    Card readCard() throws IOException, VCardException {
+        String line;
+        do {
+            line = readLine();
+            if (line == null) {
+                return null;
+            }
+        } while (!line.equalsIgnoreCase("BEGIN:VCARD"));
+
+        Card card = new Card();
+        while ((line = readLine()) != null) {
+            if (line.equalsIgnoreCase("END:VCARD")) {
+                return card;
+            }
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.equalsIgnoreCase("BEGIN:VCARD")) {
+                // The previous card was never closed, so start over with this one.
+                pushedBackLine = line;
+                throw new VCardException("Card is missing END:VCARD");
+            }
+
+            int colon = line.indexOf(':');
+            if (colon == -1) {
+                throw new VCardException("Malformed line: " + line);
+            }
+
+            String[] nameAndParameters = line.substring(0, colon).split(";");
+            String name = nameAndParameters[0].toUpperCase(Locale.US);
+            int dot = name.lastIndexOf('.');
+            if (dot != -1) {
+                name = name.substring(dot + 1);
+            }
+
+            List<String> types = new ArrayList<>();
+            for (int i = 1; i < nameAndParameters.length; i++) {
+                String parameter = nameAndParameters[i].toUpperCase(Locale.US);
+                int equals = parameter.indexOf('=');
+                if (equals == -1) {
+                    types.add(parameter);
+                } else if (parameter.startsWith("TYPE=")) {
+                    for (String type : parameter.substring(equals + 1).replace("\"", "").split(",")) {
+                        types.add(type);
+                    }
+                } else {
+                    types.add(parameter);
+                }
+            }
+
+            card.properties.add(new Property(name, types, line.substring(colon + 1)));
+        }
+
+        throw new VCardException("Card is missing END:VCARD");
+    }
+
+    /**
+     * Reads a logical line, joining the continuation lines of folded lines.
+     */
+    private String readLine() throws IOException {
+        if (pushedBackLine != null) {
+            String line = pushedBackLine;
+            pushedBackLine = null;
+            return line;
+        }
+
+        String line = nextLine != null ? nextLine : reader.readLine();
+        nextLine = null;
+        if (line == null) {
+            return null;
+        }
+
+        StringBuilder unfolded = null;
+        String continuation;
+        while ((continuation = reader.readLine()) != null) {
+            if (continuation.length() > 0 && (continuation.charAt(0) == ' ' || continuation.charAt(0) == '\t')) {
+                if (unfolded == null) {
+                    unfolded = new StringBuilder(line);
+                }
+                unfolded.append(continuation, 1, continuation.length());
+            } else {
+                nextLine = continuation;
+                break;
+            }
+        }
+        return unfolded != null ? unfolded.toString() : line;
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') == -1) {
+            return value;
+        }
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char escaped = value.charAt(++i);
+                unescaped.append(escaped == 'n' || escaped == 'N' ? '\n' : escaped);
+            } else {
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+
+    static class VCardException extends Exception {
+        VCardException(String message) {
+            super(message);
+        }
+    }
+}
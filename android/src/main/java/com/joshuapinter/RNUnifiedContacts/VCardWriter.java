@@ -0,0 +1,143 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import android.text.TextUtils;
+import android.util.Base64;
+
+import com.facebook.react.bridge.ReadableMap;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes decoded contacts as vCard 3.0 or 4.0 text, one card at a time.
+ */
+class VCardWriter {
+
+    static final String VERSION_3 = "3.0";
+    static final String VERSION_4 = "4.0";
+
+    private static final int MAX_LINE_OCTETS = 75;
+
+    private final Writer           writer;
+    private final String           version;
+    private final ContactsProvider photoProvider;
+
+    /**
+     * @param photoProvider used to read the photo of every contact that has one, or null to leave photos out.
+     */
+    VCardWriter(Writer writer, String version, ContactsProvider photoProvider) {
+        this.writer = writer;
+        this.version = VERSION_4.equals(version) ? VERSION_4 : VERSION_3;
+        this.photoProvider = photoProvider;
+    }
+
+    void write(ContactsProvider.Contact contact) throws IOException {
+        line("BEGIN:VCARD");
+        line("VERSION:" + version);
+
+        line("FN:" + escape(contact.displayName));
+        line("N:" + escape(contact.familyName) + ";" + escape(contact.givenName) + ";" + escape(contact.middleName)
+                + ";" + escape(contact.prefix) + ";" + escape(contact.suffix));
+
+        if (!TextUtils.isEmpty(contact.company) || !TextUtils.isEmpty(contact.department)) {
+            line("ORG:" + escape(contact.company) + (TextUtils.isEmpty(contact.department) ? "" : ";" + escape(contact.department)));
+        }
+        if (!TextUtils.isEmpty(contact.jobTitle)) {
+            line("TITLE:" + escape(contact.jobTitle));
+        }
+
+        for (ContactsProvider.Contact.Item phone : contact.phones) {
+            line("TEL" + type(phone.label, "mobile".equals(phone.label) ? "CELL" : "other".equals(phone.label) ? "VOICE" : null) + ":" + escape(phone.value));
+        }
+        for (ContactsProvider.Contact.Item email : contact.emails) {
+            line("EMAIL" + type(email.label, null) + ":" + escape(email.value));
+        }
+        for (ContactsProvider.Contact.PostalAddressItem address : contact.postalAddresses) {
+            ReadableMap map = address.map;
+            line("ADR" + type(getString(map, "label"), null) + ":" + escape(getString(map, "pobox")) + ";;" + escape(getString(map, "street"))
+                    + ";" + escape(getString(map, "city")) + ";" + escape(getString(map, "region"))
+                    + ";" + escape(getString(map, "postCode")) + ";" + escape(getString(map, "country")));
+        }
+
+        if (contact.birthday != null) {
+            String monthDay = pad(contact.birthday.month) + (VERSION_4.equals(version) ? "" : "-") + pad(contact.birthday.day);
+            if (contact.birthday.year > 0) {
+                line("BDAY:" + contact.birthday.year + (VERSION_4.equals(version) ? "" : "-") + monthDay);
+            } else {
+                line("BDAY:--" + monthDay);
+            }
+        }
+
+        if (photoProvider != null && contact.hasPhoto) {
+            byte[] photo = photoProvider.getPhotoFromContactId(contact.contactId);
+            if (photo != null) {
+                String encoded = Base64.encodeToString(photo, Base64.NO_WRAP);
+                if (VERSION_4.equals(version)) {
+                    line("PHOTO:data:image/jpeg;base64," + encoded);
+                } else {
+                    line("PHOTO;ENCODING=b;TYPE=JPEG:" + encoded);
+                }
+            }
+        }
+
+        line("END:VCARD");
+    }
+
+    private static String type(String label, String knownType) {
+        if (knownType == null && ("home".equals(label) || "work".equals(label))) {
+            knownType = label.toUpperCase();
+        }
+        return knownType == null ? "" : ";TYPE=" + knownType;
+    }
+
+    private static String getString(ReadableMap map, String key) {
+        return map.hasKey(key) ? map.getString(key) : null;
+    }
+
+    private static String pad(int value) {
+        return value < 10 ? "0" + value : String.valueOf(value);
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                case ',':
+                case ';':
+                    escaped.append('\\').append(c);
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\r':
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Writes a content line, folding it after every 75 octets of UTF-8 as the vCard spec requires.
+     */
+    private void line(String line) throws IOException {
+        int octets = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            int length = c < 0x80 ? 1 : c < 0x800 ? 2 : Character.isSurrogate(c) ? 2 : 3;
+            if (octets + length > MAX_LINE_OCTETS && !Character.isLowSurrogate(c)) {
+                writer.write("\r\n ");
+                octets = 1;
+            }
+            writer.write(c);
+            octets += length;
+        }
+        writer.write("\r\n");
+    }
+}
@@ -0,0 +1,133 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+
+public class BinaryContactWriterTest {
+
+    private File       file;
+    private ByteBuffer contents;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("contacts", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private void write(ContactsProvider.Contact... contacts) throws Exception {
+        BinaryContactWriter writer = new BinaryContactWriter(file.getPath());
+        try {
+            for (ContactsProvider.Contact contact : contacts) {
+                writer.write(contact);
+            }
+            writer.finish();
+            assertEquals(contacts.length, writer.getCount());
+        } finally {
+            writer.close();
+        }
+
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            contents = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length()).order(ByteOrder.LITTLE_ENDIAN);
+        } finally {
+            input.close();
+        }
+    }
+
+    private String string(int index) {
+        if (index == -1) {
+            return null;
+        }
+        int stringCount = contents.getInt(12);
+        long stringTableOffset = contents.getLong(24);
+        int offset = (int) (stringTableOffset + 4L * stringCount + contents.getInt((int) stringTableOffset + 4 * index));
+        byte[] bytes = new byte[contents.getInt(offset)];
+        ByteBuffer string = contents.duplicate();
+        string.position(offset + 4);
+        string.get(bytes);
+        return new String(bytes, Charset.forName("UTF-8"));
+    }
+
+    /**
+     * Positions a copy of the file at the first field of the record.
+     */
+    private ByteBuffer record(int index) {
+        long recordIndexOffset = contents.getLong(32);
+        ByteBuffer record = contents.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        record.position((int) contents.getLong((int) recordIndexOffset + 8 * index) + 4);
+        return record;
+    }
+
+    @Test
+    public void writesTheHeader() throws Exception {
+        write(new ContactsProvider.Contact("1"), new ContactsProvider.Contact("2"));
+
+        assertEquals('R', contents.get(0));
+        assertEquals('N', contents.get(1));
+        assertEquals('U', contents.get(2));
+        assertEquals('C', contents.get(3));
+        assertEquals(BinaryContactWriter.SCHEMA_VERSION, contents.getInt(4));
+        assertEquals(2, contents.getInt(8));
+        assertEquals(40, contents.getLong(16));
+    }
+
+    @Test
+    public void writesRecordsThatReferenceTheStringTable() throws Exception {
+        ContactsProvider.Contact ann = new ContactsProvider.Contact("1");
+        ann.displayName = "Ann \u00c5berg";
+        ann.birthday = new ContactsProvider.Contact.Birthday(1986, 12, 31);
+        ann.phones.add(new ContactsProvider.Contact.Item("mobile", "555-0100"));
+        ContactsProvider.Contact bob = new ContactsProvider.Contact("2");
+        bob.emails.add(new ContactsProvider.Contact.Item("mobile", "bob@example.com"));
+        write(ann, bob);
+
+        ByteBuffer record = record(0);
+        assertEquals("1", string(record.getInt()));
+        assertEquals(null, string(record.getInt()));
+        assertEquals(null, string(record.getInt()));
+        assertEquals("Ann \u00c5berg", string(record.getInt()));
+        for (int i = 0; i < 9; i++) {
+            record.getInt();
+        }
+        assertEquals(2, record.get());
+        assertEquals(1986, record.getShort());
+        assertEquals(12, record.get());
+        assertEquals(31, record.get());
+        assertEquals(1, record.getShort());
+        int mobile = record.getInt();
+        assertEquals("mobile", string(mobile));
+        assertEquals("555-0100", string(record.getInt()));
+        assertEquals(0, record.getShort());
+        assertEquals(0, record.getShort());
+
+        record = record(1);
+        assertEquals("2", string(record.getInt()));
+        for (int i = 0; i < 12; i++) {
+            record.getInt();
+        }
+        assertEquals(0, record.get());
+        record.position(record.position() + 4);
+        assertEquals(0, record.getShort());
+        assertEquals(1, record.getShort());
+        assertEquals(mobile, record.getInt());
+        assertEquals("bob@example.com", string(record.getInt()));
+
+        // Strings shared by fields and records are stored once: "1", "Ann \u00c5berg", "", "mobile", "555-0100", "2"
+        // and "bob@example.com".
+        assertEquals(7, contents.getInt(12));
+    }
+}
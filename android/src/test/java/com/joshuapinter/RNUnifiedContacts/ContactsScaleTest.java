@@ -0,0 +1,184 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import android.app.Activity;
+import android.content.ContentValues;
+import android.provider.ContactsContract;
+
+import com.facebook.react.bridge.Callback;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Reads a generated address book through the module and the provider, and checks every entry point against the query
+ * count and time recorded in scale-baselines.properties. A query count that changes usually means a path started or
+ * stopped querying once per contact, so the baseline should be updated along with the code. The number of contacts
+ * can be set with the scaleTest.contacts system property.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27, manifest = Config.NONE, shadows = ShadowArguments.class, instrumentedPackages = "com.facebook.react.bridge")
+public class ContactsScaleTest {
+
+    private static final long   SEED          = 42;
+    private static final int    CONTACT_COUNT = Integer.getInteger("scaleTest.contacts", 2000);
+    private static final String SEARCH_TEXT   = "Rossi"; // One family name in 20.
+
+    private Properties           baselines;
+    private FakeContactsProvider provider;
+    private Set<String>          contactIds;
+    private Set<String>          matchingContactIds;
+
+    @Before
+    public void setUp() throws Exception {
+        baselines = new Properties();
+        InputStream input = getClass().getResourceAsStream("scale-baselines.properties");
+        try {
+            baselines.load(input);
+        } finally {
+            input.close();
+        }
+
+        provider = Robolectric.buildContentProvider(FakeContactsProvider.class).create(ContactsContract.AUTHORITY).get();
+        List<ContentValues> rows = new SyntheticContacts().seed(SEED).contactCount(CONTACT_COUNT).generate();
+        provider.insertRows(rows);
+
+        // Contacts without any data rows aren't read back, as on a device.
+        contactIds = new HashSet<>();
+        matchingContactIds = new HashSet<>();
+        for (ContentValues row : rows) {
+            String contactId = row.getAsString(ContactsContract.Data.CONTACT_ID);
+            contactIds.add(contactId);
+            String displayName = row.getAsString(ContactsContract.Contacts.DISPLAY_NAME_PRIMARY);
+            if (displayName != null && displayName.contains(SEARCH_TEXT)) {
+                matchingContactIds.add(contactId);
+            }
+        }
+        assertTrue(matchingContactIds.size() > 0);
+    }
+
+    @Test
+    public void getContacts() throws Exception {
+        RNUnifiedContactsModule module = new RNUnifiedContactsModule(new ReactApplicationContext(RuntimeEnvironment.application));
+        getContacts(module); // Warms up the code path, so only the second call is timed.
+
+        provider.resetQueryCount();
+        long start = System.nanoTime();
+        ReadableArray contacts = getContacts(module);
+        long millis = elapsedMillis(start);
+
+        assertEquals(contactIds.size(), contacts.size());
+        assertWithinBaseline("getContacts", provider.getQueryCount(), 0, millis);
+    }
+
+    @Test
+    public void searchContacts() throws Exception {
+        ReactApplicationContext reactContext = new ReactApplicationContext(RuntimeEnvironment.application);
+        reactContext.onHostResume(Robolectric.setupActivity(Activity.class));
+        RNUnifiedContactsModule module = new RNUnifiedContactsModule(reactContext);
+        searchContacts(module);
+
+        provider.resetQueryCount();
+        long start = System.nanoTime();
+        ReadableArray contacts = searchContacts(module);
+        long millis = elapsedMillis(start);
+
+        assertEquals(matchingContactIds.size(), contacts.size());
+        assertWithinBaseline("searchContacts", provider.getQueryCount(), contacts.size(), millis);
+    }
+
+    @Test
+    public void getContactById() {
+        ContactsProvider contactsProvider = new ContactsProvider(RuntimeEnvironment.application.getContentResolver());
+        String contactId = matchingContactIds.iterator().next();
+        contactsProvider.getContactById(contactId);
+
+        provider.resetQueryCount();
+        long start = System.nanoTime();
+        ReadableMap contact = contactsProvider.getContactById(contactId);
+        long millis = elapsedMillis(start);
+
+        assertNotNull(contact);
+        assertEquals(contactId, contact.getString("recordID"));
+        assertWithinBaseline("getContactById", provider.getQueryCount(), 0, millis);
+    }
+
+    @Test
+    public void getContactsMatchingString() {
+        ContactsProvider contactsProvider = new ContactsProvider(RuntimeEnvironment.application.getContentResolver());
+        contactsProvider.getContactsMatchingString(SEARCH_TEXT);
+
+        provider.resetQueryCount();
+        long start = System.nanoTime();
+        ReadableArray contacts = contactsProvider.getContactsMatchingString(SEARCH_TEXT);
+        long millis = elapsedMillis(start);
+
+        assertEquals(matchingContactIds.size(), contacts.size());
+        assertWithinBaseline("getContactsMatchingString", provider.getQueryCount(), contacts.size(), millis);
+    }
+
+    private static ReadableArray getContacts(RNUnifiedContactsModule module) throws InterruptedException {
+        final ReadableArray[] result = new ReadableArray[1];
+        final CountDownLatch done = new CountDownLatch(1);
+        module.getContacts(new Callback() {
+            @Override
+            public void invoke(Object... args) {
+                result[0] = (ReadableArray) args[1];
+                done.countDown();
+            }
+        });
+        Robolectric.flushBackgroundThreadScheduler();
+        assertTrue("getContacts never called back", done.await(60, TimeUnit.SECONDS));
+        return result[0];
+    }
+
+    private static ReadableArray searchContacts(RNUnifiedContactsModule module) {
+        final ReadableArray[] result = new ReadableArray[1];
+        module.searchContacts(SEARCH_TEXT, new Callback() {
+            @Override
+            public void invoke(Object... args) {
+                result[0] = (ReadableArray) args[1];
+            }
+        });
+        return result[0];
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Checks the queries an entry point made against its fixed count plus its count per matching contact, and its time
+     * against its allowance per thousand contacts in the address book.
+     */
+    private void assertWithinBaseline(String entryPoint, int queries, int matches, long millis) {
+        int expectedQueries = baseline(entryPoint + ".queries") + baseline(entryPoint + ".queriesPerMatch") * matches;
+        assertEquals(entryPoint + " queries", expectedQueries, queries);
+
+        long maxMillis = Math.max(baseline(entryPoint + ".millis"), baseline(entryPoint + ".millisPerThousandContacts") * CONTACT_COUNT / 1000L);
+        assertTrue(entryPoint + " took " + millis + " ms, more than its baseline of " + maxMillis + " ms", millis <= maxMillis);
+    }
+
+    private int baseline(String key) {
+        return Integer.parseInt(baselines.getProperty(key, "0"));
+    }
+}
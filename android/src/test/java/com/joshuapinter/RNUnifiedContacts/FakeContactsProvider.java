@@ -0,0 +1,182 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.UriMatcher;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.net.Uri;
+import android.provider.ContactsContract;
+import android.text.TextUtils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static android.provider.ContactsContract.CommonDataKinds.Email;
+import static android.provider.ContactsContract.CommonDataKinds.Phone;
+import static android.provider.ContactsContract.CommonDataKinds.Photo;
+import static android.provider.ContactsContract.CommonDataKinds.StructuredPostal;
+
+/**
+ * Stands in for the contacts provider in Robolectric tests. Every Data row is kept in one SQLite table that also has
+ * the columns of its contact and raw contact, like the provider's own view_data, so the selections the library sends
+ * work unchanged. The contacts and raw_contacts tables are views of it.
+ *
+ * Only queries are supported. URIs it doesn't know, like the profile's, return no rows. Every query is counted, so
+ * tests can tell when a code path starts querying once per contact.
+ */
+public class FakeContactsProvider extends ContentProvider {
+
+    /**
+     * The table's columns, typed like the provider's own so that selection arguments, which are always strings,
+     * compare equal to numeric IDs.
+     */
+    private static final String[] COLUMN_DEFINITIONS = {
+            ContactsContract.Data._ID + " INTEGER PRIMARY KEY",
+            ContactsContract.Data.CONTACT_ID + " INTEGER", ContactsContract.Data.RAW_CONTACT_ID + " INTEGER",
+            ContactsContract.Data.MIMETYPE + " TEXT",
+            ContactsContract.Data.DATA1 + " TEXT", ContactsContract.Data.DATA2 + " TEXT", ContactsContract.Data.DATA3 + " TEXT",
+            ContactsContract.Data.DATA4 + " TEXT", ContactsContract.Data.DATA5 + " TEXT", ContactsContract.Data.DATA6 + " TEXT",
+            ContactsContract.Data.DATA7 + " TEXT", ContactsContract.Data.DATA8 + " TEXT", ContactsContract.Data.DATA9 + " TEXT",
+            ContactsContract.Data.DATA10 + " TEXT", ContactsContract.Data.DATA11 + " TEXT", ContactsContract.Data.DATA12 + " TEXT",
+            ContactsContract.Data.DATA13 + " TEXT", ContactsContract.Data.DATA14 + " TEXT", ContactsContract.Data.DATA15 + " BLOB",
+            ContactsContract.Data.IS_PRIMARY + " INTEGER", ContactsContract.Data.IS_SUPER_PRIMARY + " INTEGER",
+            ContactsContract.Contacts.DISPLAY_NAME_PRIMARY + " TEXT", ContactsContract.Contacts.DISPLAY_NAME_ALTERNATIVE + " TEXT",
+            ContactsContract.Contacts.SORT_KEY_PRIMARY + " TEXT", ContactsContract.Contacts.SORT_KEY_ALTERNATIVE + " TEXT",
+            ContactsContract.Contacts.LOOKUP_KEY + " TEXT", ContactsContract.Contacts.PHOTO_URI + " TEXT",
+            ContactsContract.Contacts.PHOTO_THUMBNAIL_URI + " TEXT", ContactsContract.Contacts.STARRED + " INTEGER",
+            ContactsContract.Contacts.TIMES_CONTACTED + " INTEGER", ContactsContract.Contacts.LAST_TIME_CONTACTED + " INTEGER",
+            ContactsContract.RawContacts.VERSION + " INTEGER", ContactsContract.RawContacts.ACCOUNT_TYPE + " TEXT",
+            ContactsContract.RawContacts.ACCOUNT_NAME + " TEXT"
+    };
+
+    private static final int DATA          = 1;
+    private static final int PHONES        = 2;
+    private static final int EMAILS        = 3;
+    private static final int POSTALS       = 4;
+    private static final int CONTACTS      = 5;
+    private static final int CONTACT_PHOTO = 6;
+    private static final int RAW_CONTACTS  = 7;
+
+    private static final UriMatcher URI_MATCHER = new UriMatcher(UriMatcher.NO_MATCH);
+
+    static {
+        URI_MATCHER.addURI(ContactsContract.AUTHORITY, "data", DATA);
+        URI_MATCHER.addURI(ContactsContract.AUTHORITY, "data/phones", PHONES);
+        URI_MATCHER.addURI(ContactsContract.AUTHORITY, "data/emails", EMAILS);
+        URI_MATCHER.addURI(ContactsContract.AUTHORITY, "data/postals", POSTALS);
+        URI_MATCHER.addURI(ContactsContract.AUTHORITY, "contacts", CONTACTS);
+        URI_MATCHER.addURI(ContactsContract.AUTHORITY, "contacts/#/photo", CONTACT_PHOTO);
+        URI_MATCHER.addURI(ContactsContract.AUTHORITY, "raw_contacts", RAW_CONTACTS);
+    }
+
+    private final AtomicInteger queryCount = new AtomicInteger();
+
+    private SQLiteDatabase database;
+
+    @Override
+    public boolean onCreate() {
+        database = SQLiteDatabase.create(null);
+
+        database.execSQL("CREATE TABLE data (" + TextUtils.join(", ", COLUMN_DEFINITIONS) + ")");
+        database.execSQL("CREATE INDEX data_contact_id ON data (" + ContactsContract.Data.CONTACT_ID + ")");
+        database.execSQL("CREATE INDEX data_raw_contact_id ON data (" + ContactsContract.Data.RAW_CONTACT_ID + ")");
+
+        database.execSQL("CREATE VIEW contacts AS SELECT " + ContactsContract.Data.CONTACT_ID + " AS " + ContactsContract.Contacts._ID + ", "
+                + ContactsContract.Contacts.DISPLAY_NAME_PRIMARY + ", " + ContactsContract.Contacts.DISPLAY_NAME_ALTERNATIVE + ", "
+                + ContactsContract.Contacts.SORT_KEY_PRIMARY + ", " + ContactsContract.Contacts.SORT_KEY_ALTERNATIVE + ", "
+                + ContactsContract.Contacts.LOOKUP_KEY + ", " + ContactsContract.Contacts.PHOTO_URI + ", "
+                + ContactsContract.Contacts.PHOTO_THUMBNAIL_URI + ", " + ContactsContract.Contacts.STARRED + ", "
+                + ContactsContract.Contacts.TIMES_CONTACTED + ", " + ContactsContract.Contacts.LAST_TIME_CONTACTED
+                + " FROM data GROUP BY " + ContactsContract.Data.CONTACT_ID);
+        database.execSQL("CREATE VIEW raw_contacts AS SELECT " + ContactsContract.Data.RAW_CONTACT_ID + " AS " + ContactsContract.RawContacts._ID + ", "
+                + ContactsContract.Data.CONTACT_ID + ", " + ContactsContract.RawContacts.VERSION + ", "
+                + ContactsContract.RawContacts.ACCOUNT_TYPE + ", " + ContactsContract.RawContacts.ACCOUNT_NAME
+                + " FROM data GROUP BY " + ContactsContract.Data.RAW_CONTACT_ID);
+        return true;
+    }
+
+    /**
+     * Adds Data rows directly, in one transaction, without counting as queries.
+     */
+    void insertRows(List<ContentValues> rows) {
+        database.beginTransaction();
+        try {
+            for (ContentValues row : rows) {
+                database.insertOrThrow("data", null, row);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    int getQueryCount() {
+        return queryCount.get();
+    }
+
+    void resetQueryCount() {
+        queryCount.set(0);
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        queryCount.incrementAndGet();
+
+        SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+        builder.setTables("data");
+        switch (URI_MATCHER.match(uri)) {
+            case DATA:
+                break;
+            case PHONES:
+                appendMimeType(builder, Phone.CONTENT_ITEM_TYPE);
+                break;
+            case EMAILS:
+                appendMimeType(builder, Email.CONTENT_ITEM_TYPE);
+                break;
+            case POSTALS:
+                appendMimeType(builder, StructuredPostal.CONTENT_ITEM_TYPE);
+                break;
+            case CONTACTS:
+                builder.setTables("contacts");
+                break;
+            case CONTACT_PHOTO:
+                appendMimeType(builder, Photo.CONTENT_ITEM_TYPE);
+                builder.appendWhere(" AND " + ContactsContract.Data.CONTACT_ID + " = " + Long.parseLong(uri.getPathSegments().get(1)));
+                break;
+            case RAW_CONTACTS:
+                builder.setTables("raw_contacts");
+                break;
+            default:
+                return new MatrixCursor(projection != null ? projection : new String[0]);
+        }
+        return builder.query(database, projection, selection, selectionArgs, null, null, sortOrder);
+    }
+
+    private static void appendMimeType(SQLiteQueryBuilder builder, String mimeType) {
+        builder.appendWhere(ContactsContract.Data.MIMETYPE + " = ");
+        builder.appendWhereEscapeString(mimeType);
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return null;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        throw new UnsupportedOperationException("Only queries are supported");
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("Only queries are supported");
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("Only queries are supported");
+    }
+}
@@ -0,0 +1,40 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class FingerprintTest {
+
+    @Test
+    public void isStable() {
+        // FNV-1a of the bytes 'a', 0, then the 0xff separator. Must never change, or every stored fingerprint would.
+        assertEquals(0xe5d22e190425b0e1L, Fingerprint.of("a"));
+        assertEquals(Fingerprint.of("John", "Doe"), Fingerprint.of("John", "Doe"));
+    }
+
+    @Test
+    public void separatesValues() {
+        assertNotEquals(Fingerprint.of("ab", "c"), Fingerprint.of("a", "bc"));
+        assertNotEquals(Fingerprint.of("a"), Fingerprint.of("a", null));
+    }
+
+    @Test
+    public void hashesWholeCharacters() {
+        // Both bytes of a char count, so characters sharing their low byte differ.
+        assertNotEquals(Fingerprint.of("A"), Fingerprint.of("\u0141"));
+    }
+
+    @Test
+    public void treatsNullLikeAnEmptyValue() {
+        assertEquals(Fingerprint.of((String) null), Fingerprint.of(""));
+    }
+
+    @Test
+    public void mixesEveryByteOfTheValue() {
+        long hash = Fingerprint.of("x");
+        assertNotEquals(Fingerprint.mix(hash, 1L), Fingerprint.mix(hash, 1L << 56));
+        assertEquals(Fingerprint.mix(hash, 42L), Fingerprint.mix(hash, 42L));
+    }
+}
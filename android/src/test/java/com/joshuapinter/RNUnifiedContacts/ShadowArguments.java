@@ -0,0 +1,34 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+
+import java.util.List;
+
+/**
+ * Creates plain Java arrays and maps, since the real ones need the native bridge library.
+ */
+@Implements(Arguments.class)
+public class ShadowArguments {
+
+    @Implementation
+    public static WritableArray createArray() {
+        return new JavaOnlyArray();
+    }
+
+    @Implementation
+    public static WritableMap createMap() {
+        return new JavaOnlyMap();
+    }
+
+    @Implementation
+    public static WritableArray fromList(List list) {
+        return JavaOnlyArray.from(list);
+    }
+}
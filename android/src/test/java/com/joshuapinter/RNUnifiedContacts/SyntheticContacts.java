@@ -0,0 +1,223 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import android.content.ContentValues;
+import android.provider.ContactsContract;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static android.provider.ContactsContract.CommonDataKinds.Email;
+import static android.provider.ContactsContract.CommonDataKinds.Event;
+import static android.provider.ContactsContract.CommonDataKinds.Im;
+import static android.provider.ContactsContract.CommonDataKinds.Nickname;
+import static android.provider.ContactsContract.CommonDataKinds.Note;
+import static android.provider.ContactsContract.CommonDataKinds.Organization;
+import static android.provider.ContactsContract.CommonDataKinds.Phone;
+import static android.provider.ContactsContract.CommonDataKinds.StructuredName;
+import static android.provider.ContactsContract.CommonDataKinds.StructuredPostal;
+import static android.provider.ContactsContract.CommonDataKinds.Website;
+
+/**
+ * Generates an address book for {@link FakeContactsProvider}. The same seed and settings always give the same rows.
+ *
+ * Each contact has one raw contact, and some have a second one from another account that repeats its name and part of
+ * its data, like contacts the provider has joined. Every other kind of data is present at its own rate, and any
+ * optional column can be left empty.
+ */
+class SyntheticContacts {
+
+    static final String[] GIVEN_NAMES  = { "Ann", "Bob", "Carla", "Dmitri", "Eve", "Fran\u00e7ois", "Grace", "Hiro", "Ines", "Jo\u00e3o", "Kai", "Lena" };
+    static final String[] FAMILY_NAMES = { "Andersson", "Baker", "Chen", "Dubois", "Evans", "Fischer", "Garc\u00eda", "Haddad", "Ivanova", "Jensen", "Kowalski", "Lopez",
+                                           "M\u00fcller", "Nakamura", "Okafor", "Patel", "Quinn", "Rossi", "Smith", "Tanaka" };
+
+    private static final String[] ACCOUNT_TYPES = { "com.google", "com.whatsapp" };
+
+    private final Map<String, Double> mimeTypeRates = new LinkedHashMap<>();
+
+    private long   seed              = 1;
+    private int    contactCount      = 1000;
+    private double duplicateRate     = 0.2;
+    private double missingNameRate   = 0.05;
+    private double missingFieldRate  = 0.1;
+
+    SyntheticContacts() {
+        mimeTypeRates.put(Phone.CONTENT_ITEM_TYPE, 0.9);
+        mimeTypeRates.put(Email.CONTENT_ITEM_TYPE, 0.6);
+        mimeTypeRates.put(Organization.CONTENT_ITEM_TYPE, 0.4);
+        mimeTypeRates.put(StructuredPostal.CONTENT_ITEM_TYPE, 0.3);
+        mimeTypeRates.put(Event.CONTENT_ITEM_TYPE, 0.3);
+        mimeTypeRates.put(Note.CONTENT_ITEM_TYPE, 0.2);
+        mimeTypeRates.put(Im.CONTENT_ITEM_TYPE, 0.1);
+        mimeTypeRates.put(Website.CONTENT_ITEM_TYPE, 0.1);
+        mimeTypeRates.put(Nickname.CONTENT_ITEM_TYPE, 0.05);
+    }
+
+    SyntheticContacts seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    SyntheticContacts contactCount(int contactCount) {
+        this.contactCount = contactCount;
+        return this;
+    }
+
+    /**
+     * Sets how many contacts have a second raw contact in another account.
+     */
+    SyntheticContacts duplicateRate(double duplicateRate) {
+        this.duplicateRate = duplicateRate;
+        return this;
+    }
+
+    /**
+     * Sets how many contacts have no name row, and so no display name.
+     */
+    SyntheticContacts missingNameRate(double missingNameRate) {
+        this.missingNameRate = missingNameRate;
+        return this;
+    }
+
+    /**
+     * Sets how often an optional column, like a label or a job title, is left empty.
+     */
+    SyntheticContacts missingFieldRate(double missingFieldRate) {
+        this.missingFieldRate = missingFieldRate;
+        return this;
+    }
+
+    /**
+     * Sets how many raw contacts have data of the given kind. Phones and emails come one to three at a time.
+     */
+    SyntheticContacts mimeTypeRate(String mimeType, double rate) {
+        mimeTypeRates.put(mimeType, rate);
+        return this;
+    }
+
+    void populate(FakeContactsProvider provider) {
+        provider.insertRows(generate());
+    }
+
+    List<ContentValues> generate() {
+        Random random = new Random(seed);
+        List<ContentValues> rows = new ArrayList<>();
+        long rawContactId = 0;
+        for (long contactId = 1; contactId <= contactCount; contactId++) {
+            String givenName = GIVEN_NAMES[random.nextInt(GIVEN_NAMES.length)];
+            String familyName = FAMILY_NAMES[random.nextInt(FAMILY_NAMES.length)];
+            boolean named = random.nextDouble() >= missingNameRate;
+
+            ContentValues contact = new ContentValues();
+            contact.put(ContactsContract.Data.CONTACT_ID, contactId);
+            contact.put(ContactsContract.Contacts.LOOKUP_KEY, "lookup" + contactId);
+            contact.put(ContactsContract.Contacts.STARRED, random.nextInt(20) == 0 ? 1 : 0);
+            contact.put(ContactsContract.Contacts.TIMES_CONTACTED, random.nextInt(50));
+            if (named) {
+                contact.put(ContactsContract.Contacts.DISPLAY_NAME_PRIMARY, givenName + " " + familyName);
+                contact.put(ContactsContract.Contacts.DISPLAY_NAME_ALTERNATIVE, familyName + ", " + givenName);
+                contact.put(ContactsContract.Contacts.SORT_KEY_PRIMARY, givenName + " " + familyName);
+                contact.put(ContactsContract.Contacts.SORT_KEY_ALTERNATIVE, familyName + ", " + givenName);
+            }
+
+            List<ContentValues> firstRows = new ArrayList<>();
+            rawContactId++;
+            if (named) {
+                firstRows.add(nameRow(givenName, familyName));
+            }
+            for (Map.Entry<String, Double> entry : mimeTypeRates.entrySet()) {
+                if (random.nextDouble() < entry.getValue()) {
+                    int count = isMultiValued(entry.getKey()) ? 1 + random.nextInt(3) : 1;
+                    for (int i = 0; i < count; i++) {
+                        firstRows.add(dataRow(random, entry.getKey(), givenName, familyName, contactId, i));
+                    }
+                }
+            }
+            addRawContact(rows, contact, rawContactId, null, firstRows);
+
+            if (random.nextDouble() < duplicateRate) {
+                // The other account repeats the name and whatever else it happened to sync.
+                List<ContentValues> secondRows = new ArrayList<>();
+                rawContactId++;
+                for (ContentValues row : firstRows) {
+                    if (StructuredName.CONTENT_ITEM_TYPE.equals(row.getAsString(ContactsContract.Data.MIMETYPE)) || random.nextBoolean()) {
+                        secondRows.add(new ContentValues(row));
+                    }
+                }
+                addRawContact(rows, contact, rawContactId, ACCOUNT_TYPES[random.nextInt(ACCOUNT_TYPES.length)], secondRows);
+            }
+        }
+        return rows;
+    }
+
+    private static void addRawContact(List<ContentValues> rows, ContentValues contact, long rawContactId, String accountType, List<ContentValues> dataRows) {
+        for (ContentValues row : dataRows) {
+            row.putAll(contact);
+            row.put(ContactsContract.Data.RAW_CONTACT_ID, rawContactId);
+            row.put(ContactsContract.RawContacts.VERSION, 1);
+            row.put(ContactsContract.RawContacts.ACCOUNT_TYPE, accountType);
+            row.put(ContactsContract.RawContacts.ACCOUNT_NAME, accountType != null ? "user@example.com" : null);
+            rows.add(row);
+        }
+    }
+
+    private static boolean isMultiValued(String mimeType) {
+        return Phone.CONTENT_ITEM_TYPE.equals(mimeType) || Email.CONTENT_ITEM_TYPE.equals(mimeType);
+    }
+
+    private static ContentValues nameRow(String givenName, String familyName) {
+        ContentValues row = new ContentValues();
+        row.put(ContactsContract.Data.MIMETYPE, StructuredName.CONTENT_ITEM_TYPE);
+        row.put(StructuredName.DISPLAY_NAME, givenName + " " + familyName);
+        row.put(StructuredName.GIVEN_NAME, givenName);
+        row.put(StructuredName.FAMILY_NAME, familyName);
+        return row;
+    }
+
+    private ContentValues dataRow(Random random, String mimeType, String givenName, String familyName, long contactId, int index) {
+        ContentValues row = new ContentValues();
+        row.put(ContactsContract.Data.MIMETYPE, mimeType);
+        String handle = (givenName + "." + familyName).toLowerCase(Locale.US);
+        if (Phone.CONTENT_ITEM_TYPE.equals(mimeType)) {
+            row.put(Phone.NUMBER, String.format(Locale.US, "+1 555 %03d %04d", index, contactId % 10000));
+            row.put(Phone.TYPE, optional(random, index == 0 ? Phone.TYPE_MOBILE : Phone.TYPE_WORK));
+        } else if (Email.CONTENT_ITEM_TYPE.equals(mimeType)) {
+            row.put(Email.ADDRESS, handle + index + "@example.com");
+            row.put(Email.TYPE, optional(random, Email.TYPE_CUSTOM));
+            row.put(Email.LABEL, optional(random, "School"));
+        } else if (Organization.CONTENT_ITEM_TYPE.equals(mimeType)) {
+            row.put(Organization.COMPANY, familyName + " & Co");
+            row.put(Organization.TITLE, optional(random, "Engineer"));
+            row.put(Organization.DEPARTMENT, optional(random, "R&D"));
+        } else if (StructuredPostal.CONTENT_ITEM_TYPE.equals(mimeType)) {
+            row.put(StructuredPostal.FORMATTED_ADDRESS, contactId + " Main Street\nSpringfield");
+            row.put(StructuredPostal.TYPE, optional(random, StructuredPostal.TYPE_HOME));
+            row.put(StructuredPostal.STREET, contactId + " Main Street");
+            row.put(StructuredPostal.CITY, optional(random, "Springfield"));
+            row.put(StructuredPostal.POSTCODE, optional(random, "12345"));
+            row.put(StructuredPostal.COUNTRY, optional(random, "US"));
+        } else if (Event.CONTENT_ITEM_TYPE.equals(mimeType)) {
+            String monthAndDay = String.format(Locale.US, "%02d-%02d", 1 + random.nextInt(12), 1 + random.nextInt(28));
+            row.put(Event.START_DATE, random.nextBoolean() ? (1950 + random.nextInt(60)) + "-" + monthAndDay : "--" + monthAndDay);
+            row.put(Event.TYPE, Event.TYPE_BIRTHDAY);
+        } else if (Note.CONTENT_ITEM_TYPE.equals(mimeType)) {
+            row.put(Note.NOTE, optional(random, "Met at the conference"));
+        } else if (Im.CONTENT_ITEM_TYPE.equals(mimeType)) {
+            row.put(Im.DATA, handle);
+            row.put(Im.PROTOCOL, optional(random, Im.PROTOCOL_JABBER));
+        } else if (Website.CONTENT_ITEM_TYPE.equals(mimeType)) {
+            row.put(Website.URL, "https://example.com/" + handle);
+            row.put(Website.TYPE, optional(random, Website.TYPE_HOMEPAGE));
+        } else if (Nickname.CONTENT_ITEM_TYPE.equals(mimeType)) {
+            row.put(Nickname.NAME, givenName.substring(0, 2));
+        }
+        return row;
+    }
+
+    private <T> T optional(Random random, T value) {
+        return random.nextDouble() < missingFieldRate ? null : value;
+    }
+}
@@ -0,0 +1,32 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class T9IndexTest {
+
+    @Test
+    public void mapsLettersToTheirKeys() {
+        assertEquals("5646", T9Index.toKeypadDigits("John"));
+        assertEquals("22233344455566677778889999", T9Index.toKeypadDigits("abcdefghijklmnopqrstuvwxyz"));
+    }
+
+    @Test
+    public void keepsDigitsAndBlanksOutEverythingElse() {
+        assertEquals("5646 2", T9Index.toKeypadDigits("John-2"));
+        assertEquals("   ", T9Index.toKeypadDigits(".,!"));
+    }
+
+    @Test
+    public void ignoresAccents() {
+        assertEquals("76736", T9Index.toKeypadDigits("S\u00f6ren"));
+    }
+
+    @Test
+    public void rejectsTextWhoseDigitsWouldNotLineUp() {
+        // A Hangul syllable decomposes into several letters, so digits couldn't be mapped back to characters.
+        assertNull(T9Index.toKeypadDigits("\ud55c"));
+    }
+}
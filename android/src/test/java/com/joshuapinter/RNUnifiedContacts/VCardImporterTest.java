@@ -0,0 +1,30 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class VCardImporterTest {
+
+    @Test
+    public void convertsBirthdaysWithAYear() {
+        assertEquals("1986-12-31", VCardImporter.toStartDate("1986-12-31"));
+        assertEquals("1986-12-31", VCardImporter.toStartDate("19861231"));
+        assertEquals("1986-12-31", VCardImporter.toStartDate(" 1986-12-31T08:30:00Z "));
+    }
+
+    @Test
+    public void convertsBirthdaysWithoutAYear() {
+        assertEquals("--12-31", VCardImporter.toStartDate("--12-31"));
+        assertEquals("--12-31", VCardImporter.toStartDate("--1231"));
+    }
+
+    @Test
+    public void rejectsMalformedBirthdays() {
+        assertNull(VCardImporter.toStartDate(""));
+        assertNull(VCardImporter.toStartDate("1986-12"));
+        assertNull(VCardImporter.toStartDate("Dec 31, 1986"));
+        assertNull(VCardImporter.toStartDate("--12-31-1986"));
+    }
+}
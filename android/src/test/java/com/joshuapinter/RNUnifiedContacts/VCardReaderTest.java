@@ -0,0 +1,97 @@
+package com.joshuapinter.RNUnifiedContacts;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class VCardReaderTest {
+
+    private static VCardReader reader(String... lines) {
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) {
+            text.append(line).append("\r\n");
+        }
+        return new VCardReader(new BufferedReader(new StringReader(text.toString())));
+    }
+
+    @Test
+    public void readsCardsUntilTheEndOfTheStream() throws Exception {
+        VCardReader reader = reader(
+                "BEGIN:VCARD", "VERSION:3.0", "FN:Ann", "END:VCARD",
+                "BEGIN:VCARD", "VERSION:3.0", "FN:Bob", "END:VCARD");
+
+        assertEquals("Ann", reader.readCard().first("FN").value());
+        assertEquals("Bob", reader.readCard().first("FN").value());
+        assertNull(reader.readCard());
+    }
+
+    @Test
+    public void unfoldsContinuationLines() throws Exception {
+        VCardReader.Card card = reader("BEGIN:VCARD", "NOTE:first", " second", "\tthird", "END:VCARD").readCard();
+
+        assertEquals("firstsecondthird", card.first("NOTE").value());
+    }
+
+    @Test
+    public void dropsPropertyGroups() throws Exception {
+        VCardReader.Card card = reader("BEGIN:VCARD", "item1.TEL:555", "END:VCARD").readCard();
+
+        assertEquals("555", card.first("TEL").value());
+    }
+
+    @Test
+    public void readsParametersInEveryStyle() throws Exception {
+        VCardReader.Card card = reader(
+                "BEGIN:VCARD",
+                "TEL;CELL:1",
+                "tel;type=work,voice:2",
+                "TEL;TYPE=\"HOME\";PREF=1:3",
+                "END:VCARD").readCard();
+
+        assertEquals(Arrays.asList("CELL"), card.all("TEL").get(0).types);
+        assertEquals(Arrays.asList("WORK", "VOICE"), card.all("TEL").get(1).types);
+        assertTrue(card.all("TEL").get(2).hasType("HOME"));
+        assertTrue(card.all("TEL").get(2).hasType("PREF=1"));
+    }
+
+    @Test
+    public void unescapesValuesAndComponents() throws Exception {
+        VCardReader.Card card = reader(
+                "BEGIN:VCARD",
+                "NOTE:one\\, two\\nthree",
+                "N:Doe;John\\;Jr;;;",
+                "END:VCARD").readCard();
+
+        assertEquals("one, two\nthree", card.first("NOTE").value());
+        assertEquals(Arrays.asList("Doe", "John;Jr", "", "", ""), card.first("N").components());
+        assertEquals("", card.first("N").component(7));
+    }
+
+    @Test
+    public void continuesWithTheNextCardAfterAnUnclosedOne() throws Exception {
+        VCardReader reader = reader("BEGIN:VCARD", "FN:Ann", "BEGIN:VCARD", "FN:Bob", "END:VCARD");
+
+        try {
+            reader.readCard();
+            fail();
+        } catch (VCardReader.VCardException e) {
+            // Expected.
+        }
+        VCardReader.Card card = reader.readCard();
+        assertNotNull(card);
+        assertEquals("Bob", card.first("FN").value());
+    }
+
+    @Test(expected = VCardReader.VCardException.class)
+    public void rejectsLinesWithoutAValue() throws Exception {
+        reader("BEGIN:VCARD", "FN", "END:VCARD").readCard();
+    }
+}